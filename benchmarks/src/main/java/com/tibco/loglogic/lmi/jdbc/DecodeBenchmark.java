@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2014-2018 TIBCO Software Inc. All Rights Reserved.
+ * Licensed under a BSD-type license. See TIBCO LICENSE.txt for license text.
+ */
+package com.tibco.loglogic.lmi.jdbc;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+
+/**
+ * Decoding of a results page, from the JSON sent by the query node to the column storage, as done by
+ * {@link ResultsGetExecutor} for each response. Scores are rows per second.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecodeBenchmark {
+
+    static final int ROWS = 5000;
+
+    @Param({ "WIDE_BODY", "NARROW_AGGREGATE", "NORMALIZED_EVENT" })
+    public RowShape shape;
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    private byte[] page;
+
+    private int[] storage;
+
+    @Setup
+    public void setUp()
+        throws IOException {
+        page = shape.resultsPage( ROWS );
+        storage = ResultsPage.storageOf( Arrays.asList( shape.getColumns() ) );
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public Object decode()
+        throws IOException {
+        try ( JsonParser parser = jsonFactory.createParser( new ByteArrayInputStream( page ) ) ) {
+            return ResultsGetExecutor.readQueryResults( parser, storage, ROWS );
+        }
+    }
+}
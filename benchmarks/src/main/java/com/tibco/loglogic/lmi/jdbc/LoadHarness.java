@@ -0,0 +1,328 @@
+/*
+ * Copyright (c) 2014-2018 TIBCO Software Inc. All Rights Reserved.
+ * Licensed under a BSD-type license. See TIBCO LICENSE.txt for license text.
+ */
+package com.tibco.loglogic.lmi.jdbc;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Load harness: N concurrent statements run queries through {@link DriverManager}, against the local transport by
+ * default, for each combination of the batchSize, concurrentStatements and pollingPeriod settings given. Measures rows
+ * per second, time to first row, p50 and p99 of the statement latency, the peak number of threads, and the heap used
+ * by each open result set, taken while all N statements hold a result set whose first row was read.
+ * <p>
+ * Arguments are name=value pairs:
+ * <ul>
+ * <li>statements: number of concurrent statements, 8 by default</li>
+ * <li>queries: number of queries run by each statement, 4 by default</li>
+ * <li>url: URL of the driver, jdbc:lmi://localhost:9681 by default</li>
+ * <li>batchSize, concurrentStatements, pollingPeriod: comma separated lists of the values to try</li>
+ * <li>any other connection property, e.g. localRows, localColumns, localLatencyMillis and localPageDelays for the
+ * server latency and the page-delay profile, or transport=blocking with the user and password of a real node</li>
+ * </ul>
+ * <pre>
+ * java -cp target/benchmarks.jar com.tibco.loglogic.lmi.jdbc.LoadHarness statements=32 batchSize=1000,10000 \
+ *     concurrentStatements=4,30 localLatencyMillis=2 localPageDelays=500,50
+ * </pre>
+ */
+public class LoadHarness {
+
+    private static final String[] SWEPT = { LmiConnection.PROPERTY_BATCH_SIZE,
+                                            LmiConnection.PROPERTY_CONCURRENT_STATEMENTS,
+                                            LmiConnection.PROPERTY_POLLING_PERIOD };
+
+    private static final String SQL = "SELECT * FROM system";
+
+    private final String url;
+
+    private final int statements;
+
+    private final int queries;
+
+    private final PrintStream out;
+
+    /**
+     * Measures of a run.
+     */
+    private static final class Result {
+
+        long rows;
+
+        long elapsedNanos;
+
+        long[] firstRowNanos;
+
+        long[] latencyNanos;
+
+        int peakThreads;
+
+        /** -1 if not measured */
+        long heapPerResultSet = -1;
+    }
+
+    private LoadHarness( String url, int statements, int queries, PrintStream out ) {
+        this.url = url;
+        this.statements = statements;
+        this.queries = queries;
+        this.out = out;
+    }
+
+    public static void main( String[] args )
+        throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty( LmiConnection.PROPERTY_TRANSPORT, LmiConnection.TRANSPORT_LOCAL );
+        properties.setProperty( LmiConnection.PROPERTY_LOCAL_ROWS, "50000" );
+        properties.setProperty( LmiConnection.PROPERTY_USER, "benchmark" );
+        properties.setProperty( LmiConnection.PROPERTY_PASSWORD, "benchmark" );
+        for ( String arg : args ) {
+            int equals = arg.indexOf( '=' );
+            if ( equals < 0 ) {
+                System.err.println( "Arguments are name=value pairs, not " + arg );
+                System.exit( 2 );
+            }
+            properties.setProperty( arg.substring( 0, equals ), arg.substring( equals + 1 ) );
+        }
+        String url = (String) properties.remove( "url" );
+        int statements = Integer.parseInt( (String) getOrDefault( properties.remove( "statements" ), "8" ) );
+        int queries = Integer.parseInt( (String) getOrDefault( properties.remove( "queries" ), "4" ) );
+
+        List<String[]> values = new ArrayList<>();
+        for ( String name : SWEPT ) {
+            String value = properties.getProperty( name );
+            values.add( value == null ? new String[] { null } : value.split( "," ) );
+        }
+
+        Class.forName( LmiJdbcDriver.class.getName() );
+
+        // the driver prints its progress on the standard output
+        PrintStream out = System.out;
+        System.setOut( new PrintStream( new OutputStream() {
+
+            @Override
+            public void write( int b ) {
+            }
+
+            @Override
+            public void write( byte[] b, int off, int len ) {
+            }
+        } ) );
+
+        LoadHarness harness = new LoadHarness( url == null ? "jdbc:lmi://localhost:9681" : url, statements, queries,
+                                               out );
+        out.printf( "%d statements, %d queries each, %s%n", statements, queries, properties );
+        out.printf( "%10s %10s %10s %12s %10s %10s %10s %8s %12s%n", "batchSize", "concurrent", "polling", "rows/s",
+                    "ttfr p50", "lat p50", "lat p99", "threads", "heap/rs" );
+        for ( String batchSize : values.get( 0 ) ) {
+            for ( String concurrentStatements : values.get( 1 ) ) {
+                for ( String pollingPeriod : values.get( 2 ) ) {
+                    Properties run = (Properties) properties.clone();
+                    set( run, LmiConnection.PROPERTY_BATCH_SIZE, batchSize );
+                    set( run, LmiConnection.PROPERTY_CONCURRENT_STATEMENTS, concurrentStatements );
+                    set( run, LmiConnection.PROPERTY_POLLING_PERIOD, pollingPeriod );
+                    Result result = harness.run( run );
+                    out.printf( "%10s %10s %10s %12.0f %8.1fms %8.1fms %8.1fms %8d %12s%n",
+                                getOrDefault( batchSize, "-" ), getOrDefault( concurrentStatements, "-" ),
+                                getOrDefault( pollingPeriod, "-" ),
+                                result.rows * 1e9 / result.elapsedNanos, millis( result.firstRowNanos, 50 ),
+                                millis( result.latencyNanos, 50 ), millis( result.latencyNanos, 99 ),
+                                result.peakThreads,
+                                result.heapPerResultSet < 0 ? "-" : bytes( result.heapPerResultSet ) );
+                }
+            }
+        }
+        System.exit( 0 );
+    }
+
+    private Result run( Properties properties )
+        throws Exception {
+        final Result result = new Result();
+        final AtomicLong rows = new AtomicLong();
+        final AtomicReference<Exception> failure = new AtomicReference<>();
+        final long[] firstRowNanos = new long[statements * queries];
+        final long[] latencyNanos = new long[statements * queries];
+        // all the statements and the measuring thread, once the first result sets are open
+        final CyclicBarrier opened = new CyclicBarrier( statements + 1 );
+        final CyclicBarrier measured = new CyclicBarrier( statements + 1 );
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+        try ( final Connection connection = DriverManager.getConnection( url, properties ) ) {
+            // one query first, so that classes and pools are loaded before anything is measured
+            query( connection, null, null, null );
+            long heapBefore = usedHeap( memory );
+            threads.resetPeakThreadCount();
+
+            Thread[] workers = new Thread[statements];
+            for ( int i = 0; i < statements; i++ ) {
+                final int worker = i;
+                workers[i] = new Thread( new Runnable() {
+
+                    @Override
+                    public void run() {
+                        try ( Statement statement = connection.createStatement() ) {
+                            for ( int query = 0; query < queries; query++ ) {
+                                int index = worker * queries + query;
+                                long start = System.nanoTime();
+                                long[] times = new long[2];
+                                rows.addAndGet( query( connection, statement, query == 0 ? new CyclicBarrier[] {
+                                    opened, measured } : null, times ) );
+                                firstRowNanos[index] = times[0] - start;
+                                latencyNanos[index] = System.nanoTime() - start - times[1];
+                            }
+                        }
+                        catch ( Exception e ) {
+                            failure.compareAndSet( null, e );
+                            opened.reset();
+                            measured.reset();
+                        }
+                    }
+                }, "load-" + i );
+            }
+
+            long start = System.nanoTime();
+            long pause = 0;
+            for ( Thread worker : workers ) {
+                worker.start();
+            }
+            try {
+                opened.await( 10, TimeUnit.MINUTES );
+                long pauseStart = System.nanoTime();
+                result.heapPerResultSet = Math.max( 0, usedHeap( memory ) - heapBefore ) / statements;
+                pause = System.nanoTime() - pauseStart;
+                measured.await( 10, TimeUnit.MINUTES );
+            }
+            catch ( BrokenBarrierException | TimeoutException e ) {
+                measured.reset();
+            }
+            for ( Thread worker : workers ) {
+                worker.join();
+            }
+            // the statements are all stopped while the heap is measured
+            result.elapsedNanos = System.nanoTime() - start - pause;
+            result.peakThreads = threads.getPeakThreadCount();
+        }
+        if ( failure.get() != null ) {
+            throw failure.get();
+        }
+        result.rows = rows.get();
+        result.firstRowNanos = firstRowNanos;
+        result.latencyNanos = latencyNanos;
+        return result;
+    }
+
+    /**
+     * Runs a query and reads every value.
+     *
+     * @param statement statement to use, a new one if null
+     * @param barriers barriers to wait on after the first row, none if null
+     * @param times receives the time of the first row and the time spent waiting on the barriers, if not null
+     * @return the number of rows
+     */
+    private static long query( Connection connection, Statement statement, CyclicBarrier[] barriers, long[] times )
+        throws SQLException, InterruptedException {
+        Statement owned = statement == null ? connection.createStatement() : null;
+        try ( ResultSet resultSet = ( statement == null ? owned : statement ).executeQuery( SQL ) ) {
+            int columnCount = resultSet.getMetaData().getColumnCount();
+            long count = 0;
+            boolean first = true;
+            while ( resultSet.next() ) {
+                if ( first ) {
+                    first = false;
+                    firstRow( barriers, times );
+                }
+                for ( int column = 1; column <= columnCount; column++ ) {
+                    resultSet.getObject( column );
+                }
+                count++;
+            }
+            if ( first ) {
+                // no rows: the end of the results stands for the first row, and the barriers are still passed
+                firstRow( barriers, times );
+            }
+            return count;
+        }
+        finally {
+            if ( owned != null ) {
+                owned.close();
+            }
+        }
+    }
+
+    /**
+     * Records the time of the first row, or of the end of the results when there is none, and waits on the barriers.
+     */
+    private static void firstRow( CyclicBarrier[] barriers, long[] times )
+        throws InterruptedException {
+        long firstRow = System.nanoTime();
+        if ( times != null ) {
+            times[0] = firstRow;
+        }
+        if ( barriers != null ) {
+            for ( CyclicBarrier barrier : barriers ) {
+                try {
+                    barrier.await();
+                }
+                catch ( BrokenBarrierException e ) {
+                    // a statement failed, no heap measure
+                }
+            }
+            if ( times != null ) {
+                times[1] = System.nanoTime() - firstRow;
+            }
+        }
+    }
+
+    private static long usedHeap( MemoryMXBean memory )
+        throws InterruptedException {
+        for ( int i = 0; i < 3; i++ ) {
+            System.gc();
+            Thread.sleep( 50 );
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    private static void set( Properties properties, String name, String value ) {
+        if ( value != null ) {
+            properties.setProperty( name, value.trim() );
+        }
+    }
+
+    private static Object getOrDefault( Object value, Object defaultValue ) {
+        return value == null ? defaultValue : value;
+    }
+
+    private static double millis( long[] nanos, int percentile ) {
+        long[] sorted = nanos.clone();
+        Arrays.sort( sorted );
+        int index = Math.min( sorted.length - 1, (int) Math.ceil( sorted.length * percentile / 100.0 ) - 1 );
+        return sorted[Math.max( 0, index )] / 1e6;
+    }
+
+    private static String bytes( long bytes ) {
+        if ( bytes >= 1024 * 1024 ) {
+            return String.format( "%.1fMB", bytes / ( 1024.0 * 1024.0 ) );
+        }
+        return String.format( "%.1fKB", bytes / 1024.0 );
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2014-2018 TIBCO Software Inc. All Rights Reserved.
+ * Licensed under a BSD-type license. See TIBCO LICENSE.txt for license text.
+ */
+package com.tibco.loglogic.lmi.jdbc;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * A whole query against the local transport, see {@link LmiConnection#TRANSPORT_LOCAL}: creation, paging, decoding
+ * and reading of every value, and deletion. Scores are rows per second.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LocalQueryBenchmark {
+
+    static final int ROWS = 50000;
+
+    @Param({ "WIDE_BODY", "NARROW_AGGREGATE", "NORMALIZED_EVENT" })
+    public RowShape shape;
+
+    @Param({ "5000" })
+    public int batchSize;
+
+    private Connection connection;
+
+    private int columnCount;
+
+    @Setup
+    public void setUp()
+        throws Exception {
+        Class.forName( LmiJdbcDriver.class.getName() );
+
+        StringBuilder columns = new StringBuilder();
+        for ( QueryPostExecutor.ColumnDesc column : shape.getColumns() ) {
+            if ( columns.length() > 0 ) {
+                columns.append( ',' );
+            }
+            columns.append( column.getName() ).append( ':' ).append( column.getType() );
+        }
+        columnCount = shape.getColumns().length;
+
+        Properties properties = new Properties();
+        properties.setProperty( LmiConnection.PROPERTY_TRANSPORT, LmiConnection.TRANSPORT_LOCAL );
+        properties.setProperty( LmiConnection.PROPERTY_LOCAL_ROWS, Integer.toString( ROWS ) );
+        properties.setProperty( LmiConnection.PROPERTY_LOCAL_COLUMNS, columns.toString() );
+        properties.setProperty( LmiConnection.PROPERTY_BATCH_SIZE, Integer.toString( batchSize ) );
+        properties.setProperty( LmiConnection.PROPERTY_USER, "benchmark" );
+        properties.setProperty( LmiConnection.PROPERTY_PASSWORD, "benchmark" );
+        connection = DriverManager.getConnection( "jdbc:lmi://localhost:9681", properties );
+    }
+
+    @TearDown
+    public void tearDown()
+        throws SQLException {
+        connection.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void query( Blackhole blackhole )
+        throws SQLException {
+        try ( Statement statement = connection.createStatement();
+              ResultSet resultSet = statement.executeQuery( "SELECT * FROM system" ) ) {
+            while ( resultSet.next() ) {
+                for ( int column = 1; column <= columnCount; column++ ) {
+                    blackhole.consume( resultSet.getObject( column ) );
+                }
+            }
+        }
+    }
+}
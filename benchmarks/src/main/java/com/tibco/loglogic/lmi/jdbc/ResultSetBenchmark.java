@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2014-2018 TIBCO Software Inc. All Rights Reserved.
+ * Licensed under a BSD-type license. See TIBCO LICENSE.txt for license text.
+ */
+package com.tibco.loglogic.lmi.jdbc;
+
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Reading the rows of a result set already received: {@link LmiResultSet#next()} and the accessors of the values,
+ * on each column they apply to, or {@link LmiBulkReader#fillLongs} for whole columns. Scores are rows per second.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResultSetBenchmark {
+
+    static final int ROWS = 10000;
+
+    @Param({ "WIDE_BODY", "NARROW_AGGREGATE", "NORMALIZED_EVENT" })
+    public RowShape shape;
+
+    private QueryPostExecutor.ColumnDesc[] columns;
+
+    private String[][] rows;
+
+    private int[] numericColumns;
+
+    private int[] timestampColumns;
+
+    private LmiResultSet resultSet;
+
+    @Setup
+    public void setUp() {
+        columns = shape.getColumns();
+        rows = shape.rows( ROWS );
+        numericColumns = shape.columnsOfType( Types.TIMESTAMP, Types.BIGINT, Types.INTEGER );
+        timestampColumns = shape.columnsOfType( Types.TIMESTAMP );
+    }
+
+    /**
+     * A result set is read once, a new one is needed for each invocation.
+     */
+    @Setup(Level.Invocation)
+    public void newResultSet()
+        throws SQLException {
+        resultSet = new LmiResultSet( columns, rows );
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public int next()
+        throws SQLException {
+        int count = 0;
+        while ( resultSet.next() ) {
+            count++;
+        }
+        return count;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void getString( Blackhole blackhole )
+        throws SQLException {
+        while ( resultSet.next() ) {
+            for ( int column = 1; column <= columns.length; column++ ) {
+                blackhole.consume( resultSet.getString( column ) );
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void getLong( Blackhole blackhole )
+        throws SQLException {
+        while ( resultSet.next() ) {
+            for ( int column : numericColumns ) {
+                blackhole.consume( resultSet.getLong( column ) );
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void fillLongs( Blackhole blackhole )
+        throws SQLException {
+        long[] values = new long[ROWS];
+        while ( resultSet.nextBatch() > 0 ) {
+            for ( int column : numericColumns ) {
+                resultSet.fillLongs( column, values, 0 );
+                blackhole.consume( values );
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void getTimestamp( Blackhole blackhole )
+        throws SQLException {
+        while ( resultSet.next() ) {
+            for ( int column : timestampColumns ) {
+                blackhole.consume( resultSet.getTimestamp( column ) );
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void getObject( Blackhole blackhole )
+        throws SQLException {
+        while ( resultSet.next() ) {
+            for ( int column = 1; column <= columns.length; column++ ) {
+                blackhole.consume( resultSet.getObject( column ) );
+            }
+        }
+    }
+}
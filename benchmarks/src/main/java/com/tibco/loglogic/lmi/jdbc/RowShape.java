@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2014-2018 TIBCO Software Inc. All Rights Reserved.
+ * Licensed under a BSD-type license. See TIBCO LICENSE.txt for license text.
+ */
+package com.tibco.loglogic.lmi.jdbc;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Typical rows of LMI queries, with deterministic synthetic values.
+ */
+public enum RowShape {
+
+    /** raw events: time, collector and a log line of a few hundred characters */
+    WIDE_BODY("sys_eventTime:TIMESTAMP,sys_collectIP:INET_ADDR,sys_body:STRING"),
+
+    /** result of a GROUP BY: a few numbers per row */
+    NARROW_AGGREGATE("sys_eventTime:TIMESTAMP,count:LONG,bytes:LONG,average:DOUBLE"),
+
+    /** parsed events: many short columns of every type */
+    NORMALIZED_EVENT("sys_eventTime:TIMESTAMP,sys_collectIP:INET_ADDR,sys_eventSource:STRING,src_ip:INET_ADDR,"
+        + "src_port:INT,dst_ip:INET_ADDR,dst_port:INT,protocol:STRING,action:STRING,user:STRING,domain:STRING,"
+        + "app:STRING,bytes_in:LONG,bytes_out:LONG,packets:INT,duration:DOUBLE,severity:INT,allowed:BOOLEAN,"
+        + "rule:STRING,category:STRING,country:STRING,session_id:LONG,risk:DOUBLE,message:STRING");
+
+    private static final long FIRST_EVENT_TIME = 1500000000000L;
+
+    private static final String[] WORDS = { "accepted", "connection", "from", "session", "opened", "user", "closed",
+                                            "denied", "policy", "firewall", "request", "completed", "status" };
+
+    private final QueryPostExecutor.ColumnDesc[] columns;
+
+    private final int[] types;
+
+    RowShape( String columns ) {
+        List<QueryPostExecutor.ColumnDesc> descs = new ArrayList<>();
+        for ( String column : columns.split( "," ) ) {
+            String[] parts = column.split( ":" );
+            descs.add( new QueryPostExecutor.ColumnDesc( parts[0], parts[1] ) );
+        }
+        this.columns = descs.toArray( new QueryPostExecutor.ColumnDesc[0] );
+        this.types = new int[this.columns.length];
+        for ( int i = 0; i < types.length; i++ ) {
+            types[i] = LmiResultSetMetaData.getSQLTypeId( this.columns[i].getType() );
+        }
+    }
+
+    QueryPostExecutor.ColumnDesc[] getColumns() {
+        return columns.clone();
+    }
+
+    QueryPostExecutor.QueryMetadata getMetadata() {
+        QueryPostExecutor.QueryMetadata metadata = new QueryPostExecutor.QueryMetadata();
+        metadata.setQueryId( "benchmark" );
+        metadata.setColumns( Arrays.asList( getColumns() ) );
+        return metadata;
+    }
+
+    /** JDBC type of each column */
+    int[] getTypes() {
+        return types.clone();
+    }
+
+    /** 1-based indexes of the columns of the given JDBC types */
+    int[] columnsOfType( int... jdbcTypes ) {
+        List<Integer> indexes = new ArrayList<>();
+        for ( int i = 0; i < types.length; i++ ) {
+            for ( int type : jdbcTypes ) {
+                if ( types[i] == type ) {
+                    indexes.add( i + 1 );
+                }
+            }
+        }
+        int[] result = new int[indexes.size()];
+        for ( int i = 0; i < result.length; i++ ) {
+            result[i] = indexes.get( i );
+        }
+        return result;
+    }
+
+    /** the rows as strings, as they are kept by a result set built in memory */
+    String[][] rows( int rowCount ) {
+        String[][] rows = new String[rowCount][columns.length];
+        for ( int row = 0; row < rowCount; row++ ) {
+            for ( int column = 0; column < columns.length; column++ ) {
+                rows[row][column] = value( column, row );
+            }
+        }
+        return rows;
+    }
+
+    /** a results page as sent by the query node */
+    byte[] resultsPage( int rowCount )
+        throws IOException {
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        try ( JsonGenerator generator = new JsonFactory().createGenerator( json, JsonEncoding.UTF8 ) ) {
+            generator.writeStartObject();
+            generator.writeNumberField( "offset", 0 );
+            generator.writeArrayFieldStart( "rows" );
+            for ( int row = 0; row < rowCount; row++ ) {
+                generator.writeStartArray();
+                for ( int column = 0; column < columns.length; column++ ) {
+                    switch ( types[column] ) {
+                        case Types.TIMESTAMP:
+                        case Types.BIGINT:
+                            generator.writeNumber( Long.parseLong( value( column, row ) ) );
+                            break;
+                        case Types.INTEGER:
+                            generator.writeNumber( Integer.parseInt( value( column, row ) ) );
+                            break;
+                        case Types.DOUBLE:
+                            generator.writeNumber( Double.parseDouble( value( column, row ) ) );
+                            break;
+                        case Types.BOOLEAN:
+                            generator.writeBoolean( Boolean.parseBoolean( value( column, row ) ) );
+                            break;
+                        default:
+                            generator.writeString( value( column, row ) );
+                    }
+                }
+                generator.writeEndArray();
+            }
+            generator.writeEndArray();
+            generator.writeNumberField( "progress", 100 );
+            generator.writeNumberField( "timeSpent", 1200 );
+            generator.writeBooleanField( "hasMore", false );
+            generator.writeEndObject();
+        }
+        return json.toByteArray();
+    }
+
+    private String value( int column, int row ) {
+        switch ( types[column] ) {
+            case Types.TIMESTAMP:
+                return Long.toString( FIRST_EVENT_TIME + row * 250L );
+            case Types.BIGINT:
+                return Long.toString( ( row * 7919L + column ) % 10000000 );
+            case Types.INTEGER:
+                return Integer.toString( ( row * 31 + column ) % 65536 );
+            case Types.DOUBLE:
+                return Double.toString( ( row % 1000 ) / 8.0 + column );
+            case Types.BOOLEAN:
+                return Boolean.toString( ( row + column ) % 3 != 0 );
+            default:
+                if ( "INET_ADDR".equalsIgnoreCase( columns[column].getType() ) ) {
+                    return "10." + ( column & 0xff ) + "." + ( ( row >> 8 ) & 0xff ) + "." + ( row & 0xff );
+                }
+                if ( "sys_body".equals( columns[column].getName() ) ) {
+                    return logLine( row );
+                }
+                return WORDS[( row + column ) % WORDS.length] + "-" + ( row % 97 );
+        }
+    }
+
+    /** syslog line of about 300 characters */
+    private static String logLine( int row ) {
+        StringBuilder line = new StringBuilder( 320 );
+        line.append( "<134>Oct 17 12:" ).append( 10 + row % 50 ).append( ':' ).append( 10 + row % 49 );
+        line.append( " host-" ).append( row % 64 ).append( " sshd[" ).append( 1000 + row % 30000 ).append( "]: " );
+        while ( line.length() < 300 ) {
+            line.append( WORDS[( row + line.length() ) % WORDS.length] ).append( ' ' );
+        }
+        return line.append( "id=" ).append( row ).toString();
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2014-2018 TIBCO Software Inc. All Rights Reserved.
+ * Licensed under a BSD-type license. See TIBCO LICENSE.txt for license text.
+ */
+package com.tibco.loglogic.lmi.jdbc;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Work done for each statement before and after the query node is involved: substitution of the parameters of a
+ * prepared statement, and the column types of the results as asked by most tools. Scores are statements, and full
+ * scans of the column types, per second.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatementBenchmark {
+
+    private static final String SQL = "SELECT sys_eventTime, sys_collectIP, sys_body FROM system "
+        + "WHERE sys_eventTime >= ? AND sys_eventTime < ? AND sys_collectIP = ? AND user = ? AND bytes_in > ? "
+        + "ORDER BY sys_eventTime LIMIT ?";
+
+    private Connection connection;
+
+    private LmiPreparedStatement statement;
+
+    /**
+     * Meta-data of the results of a query.
+     */
+    @State(Scope.Thread)
+    public static class Results {
+
+        @Param({ "WIDE_BODY", "NARROW_AGGREGATE", "NORMALIZED_EVENT" })
+        public RowShape shape;
+
+        private LmiResultSetMetaData metaData;
+
+        private int columnCount;
+
+        @Setup
+        public void setUp()
+            throws SQLException {
+            metaData = new LmiResultSetMetaData( shape.getMetadata() );
+            columnCount = metaData.getColumnCount();
+        }
+    }
+
+    @Setup
+    public void setUp()
+        throws Exception {
+        Class.forName( LmiJdbcDriver.class.getName() );
+        Properties properties = new Properties();
+        properties.setProperty( LmiConnection.PROPERTY_TRANSPORT, LmiConnection.TRANSPORT_LOCAL );
+        properties.setProperty( LmiConnection.PROPERTY_USER, "benchmark" );
+        properties.setProperty( LmiConnection.PROPERTY_PASSWORD, "benchmark" );
+        connection = DriverManager.getConnection( "jdbc:lmi://localhost:9681", properties );
+
+        statement = (LmiPreparedStatement) connection.prepareStatement( SQL );
+        statement.setTimestamp( 1, new Timestamp( 1500000000000L ) );
+        statement.setTimestamp( 2, new Timestamp( 1500086400000L ) );
+        statement.setString( 3, "10.1.2.3" );
+        statement.setString( 4, "administrator" );
+        statement.setLong( 5, 1024 );
+        statement.setInt( 6, 10000 );
+    }
+
+    @TearDown
+    public void tearDown()
+        throws SQLException {
+        connection.close();
+    }
+
+    @Benchmark
+    public String substituteParams()
+        throws SQLException {
+        return statement.substituteParams();
+    }
+
+    @Benchmark
+    public int getColumnType( Results results )
+        throws SQLException {
+        int types = 0;
+        for ( int column = 1; column <= results.columnCount; column++ ) {
+            types += results.metaData.getColumnType( column );
+        }
+        return types;
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2014-2018 TIBCO Software Inc. All Rights Reserved.
+ * Licensed under a BSD-type license. See TIBCO LICENSE.txt for license text.
+ */
+package com.tibco.loglogic.lmi.jdbc;
+
+/**
+ * Chooses the number of rows requested for each page of a result set.
+ * <p>
+ * With a fixed batch size every page is requested with the same size. In adaptive mode (batchSize=auto) the size
+ * grows when the consumer has to wait for pages and shrinks when pages pile up unread or take too long to decode,
+ * always within the min/max bounds and the byte budget of a page, estimated from the bytes per row seen so far.
+ * <p>
+ * When an initial batch size is set, the first page is requested with that size so that the first rows are returned
+ * quickly, and the following pages are made geometrically larger until they reach the batch size.
+ */
+class BatchSizer {
+
+    /** pages taking longer than this to receive and decode are made smaller */
+    private static final long TARGET_DECODE_NANOS = 1000L * 1000 * 1000;
+
+    /** growth of the page size from one page to the next while ramping up */
+    private static final int RAMP_FACTOR = 4;
+
+    /** weight of the last page in the average row size */
+    private static final double ROW_SIZE_WEIGHT = 0.3;
+
+    private boolean adaptive;
+
+    private final int minBatchSize;
+
+    private final int maxBatchSize;
+
+    private final long maxBatchBytes;
+
+    private int batchSize;
+
+    /** size of the next page while ramping up, 0 once the batch size is reached */
+    private int rampSize;
+
+    /** average size of a row in bytes, 0 until the first page is received */
+    private double bytesPerRow;
+
+    BatchSizer( int batchSize, int initialBatchSize, boolean adaptive, int minBatchSize, int maxBatchSize,
+                long maxBatchBytes ) {
+        this.adaptive = adaptive;
+        this.minBatchSize = Math.max( 1, minBatchSize );
+        this.maxBatchSize = Math.max( this.minBatchSize, maxBatchSize );
+        this.maxBatchBytes = maxBatchBytes;
+        this.batchSize = adaptive ? clamp( batchSize ) : batchSize;
+        this.rampSize = initialBatchSize > 0 && initialBatchSize < this.batchSize ? initialBatchSize : 0;
+    }
+
+    /**
+     * Sizer configured from the connection properties, for a result set requesting pages of the given size.
+     */
+    static BatchSizer forConnection( LmiConnection connection, int batchSize ) {
+        return new BatchSizer( batchSize, connection.getInitialBatchSize(), connection.isAdaptiveBatchSize(),
+                               connection.getMinBatchSize(), connection.getMaxBatchSize(),
+                               connection.getMaxBatchBytes() );
+    }
+
+    synchronized int nextBatchSize() {
+        return rampSize > 0 ? rampSize : batchSize;
+    }
+
+    /**
+     * Use a fixed size from now on, e.g. when the user sets the fetch size explicitly.
+     */
+    synchronized void setFixedBatchSize( int batchSize ) {
+        this.adaptive = false;
+        this.batchSize = batchSize;
+        this.rampSize = 0;
+    }
+
+    /**
+     * A page was received.
+     *
+     * @param rows number of rows in the page
+     * @param bytes size of the response body
+     * @param decodeNanos time spent receiving and decoding the response body
+     */
+    synchronized void pageReceived( int rows, long bytes, long decodeNanos ) {
+        if ( rampSize > 0 ) {
+            rampSize = rampSize * RAMP_FACTOR;
+            if ( rampSize >= batchSize ) {
+                rampSize = 0;
+            }
+        }
+        if ( !adaptive || rows == 0 ) {
+            return;
+        }
+        double pageBytesPerRow = (double) bytes / rows;
+        bytesPerRow = bytesPerRow == 0 ? pageBytesPerRow
+                        : ROW_SIZE_WEIGHT * pageBytesPerRow + ( 1 - ROW_SIZE_WEIGHT ) * bytesPerRow;
+        if ( decodeNanos > TARGET_DECODE_NANOS ) {
+            batchSize = batchSize / 2;
+        }
+        batchSize = clamp( batchSize );
+    }
+
+    /**
+     * The consumer had to wait for a page: fewer, larger pages keep the link busier.
+     */
+    synchronized void consumerStarved() {
+        if ( adaptive ) {
+            batchSize = clamp( batchSize * 2 );
+        }
+    }
+
+    /**
+     * A page was received before the consumer asked for it: smaller pages hold less memory for no loss.
+     */
+    synchronized void consumerBehind() {
+        if ( adaptive ) {
+            batchSize = clamp( batchSize - batchSize / 4 );
+        }
+    }
+
+    private int clamp( long size ) {
+        if ( bytesPerRow > 0 ) {
+            size = Math.min( size, (long) ( maxBatchBytes / bytesPerRow ) );
+        }
+        return (int) Math.max( minBatchSize, Math.min( maxBatchSize, size ) );
+    }
+}
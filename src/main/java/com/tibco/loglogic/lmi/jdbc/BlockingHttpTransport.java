@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2014-2018 TIBCO Software Inc. All Rights Reserved.
+ * Licensed under a BSD-type license. See TIBCO LICENSE.txt for license text.
+ */
+package com.tibco.loglogic.lmi.jdbc;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * Transport sending each request on the calling thread, which is held until the response is received.
+ */
+class BlockingHttpTransport
+    extends HttpTransport {
+
+    private final CloseableHttpClient client;
+
+    BlockingHttpTransport( CloseableHttpClient client ) {
+        this.client = client;
+    }
+
+    @Override
+    public void execute( HttpExchange exchange, HttpContext context, Executor executor ) {
+        Exception error = null;
+        try {
+            HttpUriRequest request;
+            while ( ( request = exchange.nextRequest() ) != null ) {
+                try ( CloseableHttpResponse response = client.execute( request, context ) ) {
+                    exchange.responseReceived( response );
+                }
+            }
+        }
+        catch ( Exception e ) {
+            error = e;
+        }
+        exchange.finished( error );
+    }
+
+    @Override
+    public HttpResponse execute( HttpUriRequest request, HttpContext context )
+        throws IOException {
+        return client.execute( request, context );
+    }
+
+    @Override
+    public void close()
+        throws IOException {
+        client.close();
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2014-2018 TIBCO Software Inc. All Rights Reserved.
+ * Licensed under a BSD-type license. See TIBCO LICENSE.txt for license text.
+ */
+package com.tibco.loglogic.lmi.jdbc;
+
+import java.util.List;
+
+import com.tibco.loglogic.lmi.jdbc.QueryPostExecutor.ColumnDesc;
+
+/**
+ * Index of the columns of a result set by label, ignoring case, without allocating on lookups.
+ * <p>
+ * Callers reading by label usually pass the same String instances for every row, so the last labels resolved are
+ * remembered by identity and found again with a single comparison. Other labels are looked up in an open addressing
+ * table hashed on the characters folded to a single case, and compared as {@link String#equalsIgnoreCase} does.
+ */
+final class ColumnLabels {
+
+    /** number of labels remembered by identity, a power of 2 */
+    private static final int RECENT_SIZE = 16;
+
+    /**
+     * A label and its column, replaced as a whole so that a reader never sees the label of one with the column of
+     * another.
+     */
+    private static final class Resolved {
+
+        final String label;
+
+        final int index;
+
+        Resolved( String label, int index ) {
+            this.label = label;
+            this.index = index;
+        }
+    }
+
+    private final String[] names;
+
+    /** index + 1 of the column of each slot, 0 for an empty slot */
+    private final int[] slots;
+
+    private final Resolved[] recent = new Resolved[RECENT_SIZE];
+
+    ColumnLabels( List<ColumnDesc> columns ) {
+        names = new String[columns.size()];
+        int capacity = 4;
+        while ( capacity < columns.size() * 2 ) {
+            capacity *= 2;
+        }
+        slots = new int[capacity];
+        for ( int i = 0; i < names.length; i++ ) {
+            names[i] = columns.get( i ).getName();
+            int slot = hash( names[i] ) & ( capacity - 1 );
+            while ( slots[slot] != 0 ) {
+                if ( names[slots[slot] - 1].equalsIgnoreCase( names[i] ) ) {
+                    // the first column of a name wins
+                    slot = -1;
+                    break;
+                }
+                slot = ( slot + 1 ) & ( capacity - 1 );
+            }
+            if ( slot >= 0 ) {
+                slots[slot] = i + 1;
+            }
+        }
+    }
+
+    /**
+     * @return the index of the first column of the label, from 1, or 0 if there is none
+     */
+    int indexOf( String label ) {
+        // String caches its hash code, no need for the costlier identity hash code
+        int recentSlot = label.hashCode() & ( RECENT_SIZE - 1 );
+        Resolved resolved = recent[recentSlot];
+        if ( resolved != null && resolved.label == label ) {
+            return resolved.index;
+        }
+
+        int mask = slots.length - 1;
+        for ( int slot = hash( label ) & mask; slots[slot] != 0; slot = ( slot + 1 ) & mask ) {
+            if ( names[slots[slot] - 1].equalsIgnoreCase( label ) ) {
+                recent[recentSlot] = new Resolved( label, slots[slot] );
+                return slots[slot];
+            }
+        }
+        return 0;
+    }
+
+    private static int hash( String name ) {
+        int hash = 0;
+        for ( int i = 0; i < name.length(); i++ ) {
+            // the same folding as equalsIgnoreCase, so that names equal ignoring case have the same hash
+            hash = 31 * hash + Character.toLowerCase( Character.toUpperCase( name.charAt( i ) ) );
+        }
+        // spread the high bits, the table is indexed by the low ones
+        return hash ^ ( hash >>> 16 );
+    }
+}
@@ -4,17 +4,18 @@
  */
 package com.tibco.loglogic.lmi.jdbc;
 
+import java.sql.SQLException;
 import java.util.concurrent.CountDownLatch;
 
-import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.HttpResponse;
 import org.apache.http.client.methods.HttpDelete;
-import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.client.methods.HttpUriRequest;
 
 /**
  * Task for starting the query on the query node. It should be executed on the connection's executor.
  */
 class DeleteQueryExecutor
-    implements Runnable {
+    implements Runnable, HttpExchange {
 
     private final CountDownLatch latch;
 
@@ -24,6 +25,8 @@ class DeleteQueryExecutor
 
     private ErrorDetails errorResponse;
 
+    private boolean sent;
+
     /**
      * The Constructor.
      *
@@ -37,37 +40,45 @@ class DeleteQueryExecutor
         this.latch = new CountDownLatch( 1 );
     }
 
+    @Override
+    public void run() {
+        try {
+            connection.getHttpSession().execute( this );
+        }
+        catch ( SQLException e ) {
+            finished( e );
+        }
+    }
+
     /**
      * Tells the server to delete the query.
-     *
-     * @param queryId the Id of the query to be deleted
      */
-    private void invokePostRequest( String queryId )
-        throws Exception {
+    @Override
+    public HttpUriRequest nextRequest() {
+        if ( sent ) {
+            return null;
+        }
+        sent = true;
 
         HttpDelete deleteRequest = new HttpDelete( connection.getUrl() + "/" + queryId );
         deleteRequest.setHeader( "Accept", "application/json, text/plain" );
         deleteRequest.setHeader( "Content-Type", "application/json;charset=\"UTF-8\"" );
+        return deleteRequest;
+    }
 
-        CloseableHttpClient httpClient = connection.getHttpClient();
-
-        CloseableHttpResponse closeableHttpResponse = httpClient.execute( deleteRequest );
-        closeableHttpResponse.close();
+    @Override
+    public void responseReceived( HttpResponse response ) {
+        // nothing to read, the response is released by the transport
     }
 
     @Override
-    public void run() {
-        try {
-            invokePostRequest( queryId );
-        }
-        catch ( Exception e ) {
+    public void finished( Exception error ) {
+        if ( error != null ) {
             errorResponse = new ErrorDetails();
-            errorResponse.setMessage( e.getMessage() );
-        }
-        finally {
-            // notify others we have done
-            latch.countDown();
+            errorResponse.setMessage( error.getMessage() );
         }
+        // notify others we have done
+        latch.countDown();
     }
 
     ErrorDetails getErrorResponse()
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2014-2018 TIBCO Software Inc. All Rights Reserved.
+ * Licensed under a BSD-type license. See TIBCO LICENSE.txt for license text.
+ */
+package com.tibco.loglogic.lmi.jdbc;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.http.conn.ssl.TrustStrategy;
+
+/**
+ * Trusts the server certificates whose fingerprint is in a list, see
+ * {@link LmiConnection#PROPERTY_ACCEPTED_CERTIFICATE_FINGERPRINTS}.
+ * <p>
+ * Certificates already accepted are remembered by their encoding, so the digests are computed once per certificate
+ * rather than on every handshake, and once per algorithm rather than once per accepted fingerprint.
+ */
+class FingerprintTrustStrategy
+    implements TrustStrategy {
+
+    /** a query node has one certificate at a time, this leaves room for renewals and clusters */
+    private static final int MAX_ACCEPTED_CERTIFICATES = 64;
+
+    static final class CertificateFingerprint {
+        final String algorithm;
+
+        final byte[] signature;
+
+        CertificateFingerprint( String textFingerprint ) {
+            String[] parts = textFingerprint.split( ":" );
+            algorithm = parts[0];
+            signature = new byte[parts.length - 1];
+            for ( int i = 0; i < signature.length; i++ ) {
+                signature[i] = (byte) ( Integer.parseInt( parts[i + 1], 16 ) & 0xff );
+            }
+        }
+    }
+
+    /** accepted signatures by digest algorithm */
+    private final Map<String, List<byte[]>> acceptedFingerprints = new LinkedHashMap<>();
+
+    /** encodings of the certificates accepted so far */
+    private final Set<ByteBuffer> acceptedCertificates = Collections
+        .newSetFromMap( new ConcurrentHashMap<ByteBuffer, Boolean>() );
+
+    /**
+     * @param fingerprints comma separated list of algorithm:hex fingerprints
+     */
+    FingerprintTrustStrategy( String fingerprints ) {
+        for ( String text : fingerprints.split( "," ) ) {
+            CertificateFingerprint fingerprint = new CertificateFingerprint( text );
+            List<byte[]> signatures = acceptedFingerprints.get( fingerprint.algorithm );
+            if ( signatures == null ) {
+                signatures = new ArrayList<>();
+                acceptedFingerprints.put( fingerprint.algorithm, signatures );
+            }
+            signatures.add( fingerprint.signature );
+        }
+    }
+
+    @Override
+    public boolean isTrusted( X509Certificate[] x509Certificates, String authType )
+        throws CertificateException {
+        X509Certificate certificate = x509Certificates[0];
+        certificate.checkValidity();
+
+        ByteBuffer encoded = ByteBuffer.wrap( certificate.getEncoded() );
+        if ( acceptedCertificates.contains( encoded ) ) {
+            return true;
+        }
+
+        for ( Map.Entry<String, List<byte[]>> entry : acceptedFingerprints.entrySet() ) {
+            byte[] fingerprint;
+            try {
+                fingerprint = MessageDigest.getInstance( entry.getKey() ).digest( encoded.array() );
+            }
+            catch ( NoSuchAlgorithmException e ) {
+                throw new CertificateException( "Unknown fingerprint algorithm: " + entry.getKey() );
+            }
+            for ( byte[] signature : entry.getValue() ) {
+                if ( Arrays.equals( signature, fingerprint ) ) {
+                    if ( acceptedCertificates.size() >= MAX_ACCEPTED_CERTIFICATES ) {
+                        acceptedCertificates.clear();
+                    }
+                    acceptedCertificates.add( encoded );
+                    return true;
+                }
+            }
+        }
+        throw new CertificateException( "Unaccepted Certificate Signature" );
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2014-2018 TIBCO Software Inc. All Rights Reserved.
+ * Licensed under a BSD-type license. See TIBCO LICENSE.txt for license text.
+ */
+package com.tibco.loglogic.lmi.jdbc;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+
+/**
+ * A sequence of requests to the query node, sent one after the other by a {@link HttpTransport}, e.g. the long polls
+ * for one page of results.
+ * <p>
+ * The transport calls the methods one at a time, but not necessarily on the same thread.
+ */
+public interface HttpExchange {
+
+    /**
+     * Next request to send, null when the exchange is over.
+     */
+    HttpUriRequest nextRequest()
+        throws Exception;
+
+    /**
+     * Response to the last request. The response is released by the transport once this method returns.
+     */
+    void responseReceived( HttpResponse response )
+        throws Exception;
+
+    /**
+     * The exchange is over, called exactly once.
+     *
+     * @param error the error that ended the exchange, null if it completed normally
+     */
+    void finished( Exception error );
+}
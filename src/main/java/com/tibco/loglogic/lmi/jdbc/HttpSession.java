@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2014-2018 TIBCO Software Inc. All Rights Reserved.
+ * Licensed under a BSD-type license. See TIBCO LICENSE.txt for license text.
+ */
+package com.tibco.loglogic.lmi.jdbc;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.LinkedList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.AuthCache;
+import org.apache.http.client.CredentialsProvider;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.protocol.HttpClientContext;
+
+/**
+ * Use of a shared {@link HttpTransport} by one JDBC connection.
+ * <p>
+ * Requests are sent with the credentials of the connection, and at most a given number of exchanges of the connection
+ * are in flight at a time, whatever the size of the shared pool. The exchanges beyond that wait in order, without
+ * holding a thread.
+ * <p>
+ * Each exchange has its own context, as contexts are not thread safe, but all of them share the credentials and the
+ * authentication cache of the connection: with the scheme of the query node in the cache, the credentials are sent
+ * with the first request instead of after a 401 challenge.
+ */
+final class HttpSession {
+
+    private final HttpTransportRegistry registry;
+
+    private final String key;
+
+    private final HttpTransport transport;
+
+    private final CredentialsProvider credentialsProvider;
+
+    private final AuthCache authCache;
+
+    private final Executor executor;
+
+    private final int maxExchanges;
+
+    private int exchanges;
+
+    private final LinkedList<HttpExchange> waiting = new LinkedList<>();
+
+    private boolean closed;
+
+    /**
+     * @param key key of the transport in the registry, released when the session is closed
+     * @param authCache authentication schemes of the hosts, for preemptive authentication
+     * @param executor executor of the connection
+     * @param maxExchanges maximum number of exchanges in flight
+     */
+    HttpSession( HttpTransportRegistry registry, String key, HttpTransport transport,
+                 CredentialsProvider credentialsProvider, AuthCache authCache, Executor executor, int maxExchanges ) {
+        this.registry = registry;
+        this.key = key;
+        this.transport = transport;
+        this.credentialsProvider = credentialsProvider;
+        this.authCache = authCache;
+        this.executor = executor;
+        this.maxExchanges = Math.max( 1, maxExchanges );
+    }
+
+    /**
+     * Run the exchange, or queue it if the connection has too many exchanges in flight.
+     */
+    void execute( HttpExchange exchange ) {
+        boolean rejected = false;
+        synchronized ( this ) {
+            if ( closed ) {
+                rejected = true;
+            }
+            else if ( exchanges >= maxExchanges ) {
+                waiting.add( exchange );
+                return;
+            }
+            else {
+                exchanges++;
+            }
+        }
+        if ( rejected ) {
+            exchange.finished( new SQLException( "Connection is closed" ) );
+            return;
+        }
+        start( exchange );
+    }
+
+    /**
+     * Send a single request and wait for the response, see {@link HttpTransport#execute(HttpUriRequest,
+     * org.apache.http.protocol.HttpContext)}.
+     */
+    HttpResponse execute( HttpUriRequest request )
+        throws IOException {
+        return transport.execute( request, newContext() );
+    }
+
+    private void start( final HttpExchange exchange ) {
+        transport.execute( new HttpExchange() {
+
+            @Override
+            public HttpUriRequest nextRequest()
+                throws Exception {
+                return exchange.nextRequest();
+            }
+
+            @Override
+            public void responseReceived( HttpResponse response )
+                throws Exception {
+                exchange.responseReceived( response );
+            }
+
+            @Override
+            public void finished( Exception error ) {
+                try {
+                    exchange.finished( error );
+                }
+                finally {
+                    exchangeFinished();
+                }
+            }
+        }, newContext(), executor );
+    }
+
+    /**
+     * Start the next waiting exchange in place of the one that finished.
+     */
+    private void exchangeFinished() {
+        final HttpExchange next;
+        synchronized ( this ) {
+            next = waiting.poll();
+            if ( next == null ) {
+                exchanges--;
+                return;
+            }
+        }
+        try {
+            executor.execute( new Runnable() {
+
+                @Override
+                public void run() {
+                    start( next );
+                }
+            } );
+        }
+        catch ( RejectedExecutionException e ) {
+            next.finished( new SQLException( "Connection is closed", e ) );
+            exchangeFinished();
+        }
+    }
+
+    private HttpClientContext newContext() {
+        HttpClientContext context = HttpClientContext.create();
+        context.setCredentialsProvider( credentialsProvider );
+        context.setAuthCache( authCache );
+        return context;
+    }
+
+    /**
+     * Fail the waiting exchanges and release the transport.
+     */
+    void close() {
+        LinkedList<HttpExchange> cancelled;
+        synchronized ( this ) {
+            if ( closed ) {
+                return;
+            }
+            closed = true;
+            cancelled = new LinkedList<>( waiting );
+            waiting.clear();
+        }
+        for ( HttpExchange exchange : cancelled ) {
+            exchange.finished( new SQLException( "Connection is closed" ) );
+        }
+        registry.release( key );
+    }
+}
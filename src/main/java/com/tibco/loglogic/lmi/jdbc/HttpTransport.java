@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2014-2018 TIBCO Software Inc. All Rights Reserved.
+ * Licensed under a BSD-type license. See TIBCO LICENSE.txt for license text.
+ */
+package com.tibco.loglogic.lmi.jdbc;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.Executor;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * Sends requests to the query node, see {@link LmiConnection#PROPERTY_TRANSPORT}.
+ * <p>
+ * A transport holds the HTTP connection pool and the TLS setup, and may be shared by the JDBC connections to the same
+ * query node, see {@link HttpTransportRegistry}. Anything specific to a JDBC connection, such as the credentials, is
+ * passed in the context of each exchange.
+ * <p>
+ * Other transports can be plugged in by giving the name of their class as transport. The class extends this one and
+ * has a public constructor taking the properties of the connection, or a public constructor without arguments.
+ */
+public abstract class HttpTransport
+    implements Closeable {
+
+    /**
+     * Run the exchange to completion. Depending on the transport this blocks the calling thread until the exchange is
+     * finished, or returns right away and completes the exchange in the background.
+     *
+     * @param context context of the requests of the exchange, not shared with other exchanges
+     * @param executor where the exchange is continued when the transport completes it in the background
+     */
+    public abstract void execute( HttpExchange exchange, HttpContext context, Executor executor );
+
+    /**
+     * Send a single request and wait for the response. The caller must consume the entity of the response.
+     */
+    public abstract HttpResponse execute( HttpUriRequest request, HttpContext context )
+        throws IOException;
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2014-2018 TIBCO Software Inc. All Rights Reserved.
+ * Licensed under a BSD-type license. See TIBCO LICENSE.txt for license text.
+ */
+package com.tibco.loglogic.lmi.jdbc;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transports shared by the JDBC connections of the driver.
+ * <p>
+ * Connections to the same query node with the same trust configuration share one transport, so that they share its
+ * pool of HTTP connections and its TLS context: a new JDBC connection reuses the open HTTP connections, or resumes the
+ * TLS sessions, of the previous ones instead of repeating the handshakes. A transport is closed a while after the last
+ * JDBC connection using it is closed, so that short-lived connections opened one after the other share it too.
+ */
+class HttpTransportRegistry {
+
+    /** time an unused transport is kept open for the next connection */
+    private static final long IDLE_TIMEOUT_MILLIS = 60000;
+
+    /**
+     * Creates the transport the first time it is needed.
+     */
+    interface Factory {
+
+        HttpTransport create()
+            throws SQLException;
+    }
+
+    private static final class Entry {
+
+        final HttpTransport transport;
+
+        int references;
+
+        /** closing of the transport once unused, null while it is used */
+        ScheduledFuture<?> idleClose;
+
+        Entry( HttpTransport transport ) {
+            this.transport = transport;
+        }
+    }
+
+    private final Map<String, Entry> transports = new HashMap<>();
+
+    private ScheduledExecutorService idleCloser;
+
+    /**
+     * Transport for the key, created by the factory if there is none. Each call must be matched by a call to
+     * {@link #release(String)}.
+     *
+     * @param key identifies the query node and everything the transport is configured with
+     */
+    synchronized HttpTransport acquire( String key, Factory factory )
+        throws SQLException {
+
+        Entry entry = transports.get( key );
+        if ( entry == null ) {
+            entry = new Entry( factory.create() );
+            transports.put( key, entry );
+        }
+        if ( entry.idleClose != null ) {
+            entry.idleClose.cancel( false );
+            entry.idleClose = null;
+        }
+        entry.references++;
+        return entry.transport;
+    }
+
+    /**
+     * Release a transport obtained with {@link #acquire(String, Factory)}, it is closed if it is still unused after the
+     * idle timeout.
+     */
+    synchronized void release( final String key ) {
+        final Entry entry = transports.get( key );
+        if ( entry == null || --entry.references > 0 ) {
+            return;
+        }
+        entry.idleClose = getIdleCloser().schedule( new Runnable() {
+
+            @Override
+            public void run() {
+                synchronized ( HttpTransportRegistry.this ) {
+                    if ( entry.references > 0 || transports.get( key ) != entry ) {
+                        return;
+                    }
+                    transports.remove( key );
+                }
+                close( entry.transport );
+            }
+        }, IDLE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS );
+    }
+
+    private ScheduledExecutorService getIdleCloser() {
+        if ( idleCloser == null ) {
+            ScheduledThreadPoolExecutor closer = new ScheduledThreadPoolExecutor( 1, new ThreadFactory() {
+
+                @Override
+                public Thread newThread( Runnable runnable ) {
+                    // never keeps the application alive
+                    Thread thread = new Thread( runnable, "lmi-jdbc-transport-closer" );
+                    thread.setDaemon( true );
+                    return thread;
+                }
+            } );
+            closer.setRemoveOnCancelPolicy( true );
+            idleCloser = closer;
+        }
+        return idleCloser;
+    }
+
+    private static void close( HttpTransport transport ) {
+        try {
+            transport.close();
+        }
+        catch ( IOException e ) {
+            System.err.println( "Failed to close the transport: " + e );
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2014-2018 TIBCO Software Inc. All Rights Reserved.
+ * Licensed under a BSD-type license. See TIBCO LICENSE.txt for license text.
+ */
+package com.tibco.loglogic.lmi.jdbc;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.concurrent.Executor;
+
+import javax.net.ssl.SSLContext;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * Transport on the HTTP client of the JDK, see {@link LmiConnection#TRANSPORT_JDK}.
+ * <p>
+ * The client only exists in Java 11 and later: this version of the class cannot be created, the multi-release JAR
+ * replaces it on Java 11 and later.
+ */
+class JdkHttpTransport
+    extends HttpTransport {
+
+    private JdkHttpTransport() {
+    }
+
+    /**
+     * @param timeoutMillis connect timeout, and response timeout of the requests without one
+     */
+    static HttpTransport create( SSLContext sslContext, int timeoutMillis )
+        throws SQLException {
+        throw new SQLException( "The " + LmiConnection.TRANSPORT_JDK + " transport needs Java 11 or later" );
+    }
+
+    @Override
+    public void execute( HttpExchange exchange, HttpContext context, Executor executor ) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public HttpResponse execute( HttpUriRequest request, HttpContext context )
+        throws IOException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void close() {
+    }
+}
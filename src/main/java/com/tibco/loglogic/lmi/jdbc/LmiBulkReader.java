@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2014-2018 TIBCO Software Inc. All Rights Reserved.
+ * Licensed under a BSD-type license. See TIBCO LICENSE.txt for license text.
+ */
+package com.tibco.loglogic.lmi.jdbc;
+
+import java.sql.SQLException;
+
+/**
+ * Column by column access to the rows of a result set, a batch at a time, obtained with
+ * {@code resultSet.unwrap( LmiBulkReader.class )}.
+ * <p>
+ * Each call of {@link #nextBatch()} moves to the rows of the next page received from the server, or to the rows of
+ * the current page not read yet with {@link java.sql.ResultSet#next()}, and the fill methods copy the values of a
+ * column for all these rows into an array, converted as the getters of the result set convert them. Values of
+ * numeric columns are copied from the page as a whole, rather than row by row. After the batch, {@code next()}
+ * continues with the rows of the following page.
+ * <p>
+ * Column indexes start at 1, as for the getters of the result set. The fill methods copy {@link #getBatchSize()}
+ * values, from the offset of the array, and throw an {@link SQLException} when a string value is not a number or the
+ * array is too short.
+ */
+public interface LmiBulkReader {
+
+    /**
+     * Move to the next batch of rows, blocking until it is received.
+     *
+     * @return the number of rows of the batch, 0 at the end of the results
+     */
+    int nextBatch()
+        throws SQLException;
+
+    /**
+     * @return the number of rows of the current batch, 0 before the first batch and at the end of the results
+     */
+    int getBatchSize();
+
+    /**
+     * The rows of the current batch, with typed access to the values of each column. Its column and row indexes start
+     * at 0.
+     */
+    LmiRowBatch getBatch()
+        throws SQLException;
+
+    /**
+     * Copy the values of the column in the current batch, 0 for nulls.
+     */
+    void fillLongs( int columnIndex, long[] target, int offset )
+        throws SQLException;
+
+    /**
+     * Copy the values of the column in the current batch, 0 for nulls.
+     */
+    void fillInts( int columnIndex, int[] target, int offset )
+        throws SQLException;
+
+    /**
+     * Copy the values of the column in the current batch, 0 for nulls.
+     */
+    void fillDoubles( int columnIndex, double[] target, int offset )
+        throws SQLException;
+
+    /**
+     * Copy the values of the column in the current batch, false for nulls.
+     */
+    void fillBooleans( int columnIndex, boolean[] target, int offset )
+        throws SQLException;
+
+    /**
+     * Copy the values of the column in the current batch.
+     */
+    void fillStrings( int columnIndex, String[] target, int offset )
+        throws SQLException;
+
+    /**
+     * Set the elements of the array for the rows of the current batch whose value of the column is null, clear the
+     * others.
+     */
+    void fillNulls( int columnIndex, boolean[] target, int offset )
+        throws SQLException;
+}
@@ -0,0 +1,20 @@
+/*
+ * Copyright (c) 2014-2018 TIBCO Software Inc. All Rights Reserved.
+ * Licensed under a BSD-type license. See TIBCO LICENSE.txt for license text.
+ */
+package com.tibco.loglogic.lmi.jdbc;
+
+import java.sql.SQLException;
+
+/**
+ * Completion callback of an asynchronous operation, see {@link LmiFuture}.
+ * <p>
+ * Callbacks are invoked on the connection's background threads, or on the calling thread when the operation is
+ * already complete. They should not block.
+ */
+public interface LmiCallback<T> {
+
+    void onSuccess( T result );
+
+    void onFailure( SQLException e );
+}
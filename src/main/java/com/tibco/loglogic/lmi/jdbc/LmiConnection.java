@@ -13,13 +13,12 @@ import static java.sql.ResultSet.TYPE_SCROLL_INSENSITIVE;
 import static java.sql.ResultSet.TYPE_SCROLL_SENSITIVE;
 
 import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.security.KeyManagementException;
 import java.security.KeyStoreException;
-import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.security.cert.CertificateEncodingException;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
 import java.sql.Array;
@@ -38,32 +37,37 @@ import java.sql.SQLXML;
 import java.sql.Savepoint;
 import java.sql.Statement;
 import java.sql.Struct;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSessionContext;
 
+import org.apache.http.HttpHost;
 import org.apache.http.HttpResponse;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.AuthCache;
 import org.apache.http.client.CredentialsProvider;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.config.RegistryBuilder;
 import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.conn.ssl.TrustStrategy;
+import org.apache.http.impl.auth.BasicScheme;
+import org.apache.http.impl.client.BasicAuthCache;
 import org.apache.http.impl.client.BasicCredentialsProvider;
-import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
 import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.ssl.SSLContextBuilder;
+import org.apache.http.util.EntityUtils;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -105,6 +109,36 @@ public class LmiConnection
     @SuppressWarnings("WeakerAccess")
     public static final String PROPERTY_BATCH_SIZE = "batchSize";
 
+    /**
+     * Size of the first batch of a result set. The following batches grow geometrically up to the batch size.
+     */
+    @SuppressWarnings("WeakerAccess")
+    public static final String PROPERTY_INITIAL_BATCH_SIZE = "initialBatchSize";
+
+    /**
+     * Value of the batch size property letting the driver adapt the size of each batch.
+     */
+    @SuppressWarnings("WeakerAccess")
+    public static final String BATCH_SIZE_AUTO = "auto";
+
+    /**
+     * Lower bound of the batch size when it is adaptive.
+     */
+    @SuppressWarnings("WeakerAccess")
+    public static final String PROPERTY_MIN_BATCH_SIZE = "minBatchSize";
+
+    /**
+     * Upper bound of the batch size when it is adaptive.
+     */
+    @SuppressWarnings("WeakerAccess")
+    public static final String PROPERTY_MAX_BATCH_SIZE = "maxBatchSize";
+
+    /**
+     * Approximate maximum size of a batch in bytes when the batch size is adaptive.
+     */
+    @SuppressWarnings("WeakerAccess")
+    public static final String PROPERTY_MAX_BATCH_BYTES = "maxBatchBytes";
+
     @SuppressWarnings("WeakerAccess")
     public static final String PROPERTY_ACCEPTED_CERTIFICATE_FINGERPRINTS = "acceptedCertificateFingerprints";
 
@@ -126,14 +160,170 @@ public class LmiConnection
     @SuppressWarnings("WeakerAccess")
     public static final String PROPERTY_POLLING_PERIOD = "pollingPeriod";
 
+    /**
+     * Longest window of a long-poll request for results, in milliseconds. The window grows from the polling period
+     * up to this value while a slow query progresses.
+     */
+    @SuppressWarnings("WeakerAccess")
+    public static final String PROPERTY_MAX_POLLING_PERIOD = "maxPollingPeriod";
+
+    /**
+     * Maximum number of requests of the connection in flight at a time, the others wait their turn. Also the maximum
+     * number of background threads of the connection.
+     */
     @SuppressWarnings("WeakerAccess")
     public static final String PROPERTY_CONCURRENT_STATEMENTS = "concurrentStatements";
 
+    /**
+     * Size of the pool of HTTP connections to a query node, shared by all the JDBC connections to that query node with
+     * the same trust configuration.
+     */
+    @SuppressWarnings("WeakerAccess")
+    public static final String PROPERTY_POOL_SIZE = "poolSize";
+
+    /**
+     * Number of HTTP connections to open when the first JDBC connection to a query node is made, so that the TLS
+     * handshakes are done before the first queries.
+     */
+    @SuppressWarnings("WeakerAccess")
+    public static final String PROPERTY_PREWARM_CONNECTIONS = "prewarmConnections";
+
+    /**
+     * Number of result pages fetched ahead of the page being read by a result set.
+     */
+    @SuppressWarnings("WeakerAccess")
+    public static final String PROPERTY_PREFETCH_PAGES = "prefetchPages";
+
+    /**
+     * HTTP transport used to talk to the query node, {@link #TRANSPORT_BLOCKING}, {@link #TRANSPORT_NIO},
+     * {@link #TRANSPORT_JDK}, or {@link #TRANSPORT_LOCAL} to run without query node. Any other transport is the
+     * fully qualified name of a subclass of {@link HttpTransport}.
+     */
+    @SuppressWarnings("WeakerAccess")
+    public static final String PROPERTY_TRANSPORT = "transport";
+
+    /**
+     * Each request in flight, including the long polls for results, holds a thread of the connection.
+     */
+    @SuppressWarnings("WeakerAccess")
+    public static final String TRANSPORT_BLOCKING = "blocking";
+
+    /**
+     * Requests are sent and received by a few non-blocking I/O threads, no thread is held while a request is in flight.
+     */
+    @SuppressWarnings("WeakerAccess")
+    public static final String TRANSPORT_NIO = "nio";
+
+    /**
+     * Requests are sent by the HTTP client of the JDK, with HTTP/2 when the query node supports it, and results are
+     * parsed as they arrive. Needs Java 11 or later.
+     */
+    @SuppressWarnings("WeakerAccess")
+    public static final String TRANSPORT_JDK = "jdk";
+
+    /**
+     * No query node: the requests are answered in-process with synthetic rows, to test and measure the driver alone.
+     * The host of the URL is ignored, and so are the queries, see {@link #PROPERTY_LOCAL_ROWS} and
+     * {@link #PROPERTY_LOCAL_COLUMNS}.
+     */
+    @SuppressWarnings("WeakerAccess")
+    public static final String TRANSPORT_LOCAL = "local";
+
+    /**
+     * Number of rows of each query with the local transport.
+     */
+    @SuppressWarnings("WeakerAccess")
+    public static final String PROPERTY_LOCAL_ROWS = "localRows";
+
+    /**
+     * Columns of the queries with the local transport, comma separated list of name:TYPE.
+     */
+    @SuppressWarnings("WeakerAccess")
+    public static final String PROPERTY_LOCAL_COLUMNS = "localColumns";
+
+    /**
+     * Time taken by each request with the local transport, in milliseconds, to simulate the network.
+     */
+    @SuppressWarnings("WeakerAccess")
+    public static final String PROPERTY_LOCAL_LATENCY = "localLatencyMillis";
+
+    /**
+     * Times taken by the local transport to produce the pages of each query, in milliseconds, comma separated: the
+     * first page, the second one, and so on, the last time applies to the following pages.
+     */
+    @SuppressWarnings("WeakerAccess")
+    public static final String PROPERTY_LOCAL_PAGE_DELAYS = "localPageDelays";
+
+    /**
+     * Number of I/O threads of the nio transport, the number of processors by default.
+     */
+    @SuppressWarnings("WeakerAccess")
+    public static final String PROPERTY_IO_THREADS = "ioThreads";
+
+    /**
+     * Run the background tasks of the connection on virtual threads rather than on a pool of threads, on Java 21 and
+     * later.
+     */
+    @SuppressWarnings("WeakerAccess")
+    public static final String PROPERTY_VIRTUAL_THREADS = "virtualThreads";
+
+    /**
+     * Keep the results of the queries on time ranges that are over, and answer the same queries from memory, in a
+     * cache shared by the connections of the driver.
+     */
+    @SuppressWarnings("WeakerAccess")
+    public static final String PROPERTY_RESULT_CACHE = "resultCache";
+
+    /**
+     * Time the catalogs of the models and of their columns are kept for the meta-data of the connections, in
+     * milliseconds, 0 to fetch them for each call.
+     */
+    @SuppressWarnings("WeakerAccess")
+    public static final String PROPERTY_METADATA_CACHE_TTL = "metadataCacheTtl";
+
+    /**
+     * Directory where the catalogs of the models and of their columns are kept from one process to the next, for each
+     * query node, build of the query node and user. Loaded when connecting, and fetched again in the background.
+     */
+    @SuppressWarnings("WeakerAccess")
+    public static final String PROPERTY_METADATA_SNAPSHOT_DIR = "metadataSnapshotDir";
+
+    /**
+     * Number of queries a query is split into, each on a part of its sys_eventTime range, run in parallel by the query
+     * node. 1 to never split queries.
+     */
+    @SuppressWarnings("WeakerAccess")
+    public static final String PROPERTY_SPLIT_QUERIES = "splitQueries";
+
+    /**
+     * Byte budget of the result cache, the largest one of the connections applies.
+     */
+    @SuppressWarnings("WeakerAccess")
+    public static final String PROPERTY_RESULT_CACHE_MAX_BYTES = "resultCacheMaxBytes";
+
+    /**
+     * Maximum number of queries in the result cache, the largest one of the connections applies.
+     */
+    @SuppressWarnings("WeakerAccess")
+    public static final String PROPERTY_RESULT_CACHE_MAX_ENTRIES = "resultCacheMaxEntries";
+
+    /**
+     * Time after its end from which a time range is over, and its events no longer change, in milliseconds.
+     */
+    @SuppressWarnings("WeakerAccess")
+    public static final String PROPERTY_RESULT_CACHE_MIN_AGE = "resultCacheMinAge";
+
     // defaults for the above properties
     static final String DEFAULT_NETWORK_TIMEOUT_MILIS = "600000";
 
     static final String DEFAULT_BATCH_SIZE = "5000";
 
+    static final String DEFAULT_MIN_BATCH_SIZE = "100";
+
+    static final String DEFAULT_MAX_BATCH_SIZE = "50000";
+
+    static final String DEFAULT_MAX_BATCH_BYTES = "16777216";
+
     static final String DEFAULT_QUERY_TIMEOUT = "3600";
 
     static final String DEFAULT_NO_HOSTNAME_VERIFICATION = "false";
@@ -142,12 +332,49 @@ public class LmiConnection
 
     static final String DEFAULT_POLL_PERIOD = "10000";
 
+    static final String DEFAULT_MAX_POLL_PERIOD = "60000";
+
     static final String DEFAULT_CONCURRENT_STATEMENTS = "30";
 
+    static final String DEFAULT_PREFETCH_PAGES = "1";
+
+    static final String DEFAULT_POOL_SIZE = "100";
+
+    static final String DEFAULT_PREWARM_CONNECTIONS = "0";
+
+    static final String DEFAULT_VIRTUAL_THREADS = "false";
+
+    static final String DEFAULT_RESULT_CACHE = "false";
+
+    static final String DEFAULT_SPLIT_QUERIES = "1";
+
+    static final String DEFAULT_METADATA_CACHE_TTL = "0";
+
+    static final String DEFAULT_RESULT_CACHE_MAX_BYTES = "67108864";
+
+    static final String DEFAULT_RESULT_CACHE_MAX_ENTRIES = "1000";
+
+    static final String DEFAULT_RESULT_CACHE_MIN_AGE = "900000";
+
+    static final String DEFAULT_LOCAL_ROWS = "10000";
+
+    static final String DEFAULT_LOCAL_COLUMNS = "sys_eventTime:TIMESTAMP,sys_collectIP:INET_ADDR,sys_body:STRING";
+
+    static final String DEFAULT_LOCAL_LATENCY = "0";
+
+    static final String DEFAULT_LOCAL_PAGE_DELAYS = "0";
+
+    /** TLS sessions kept for resumption, a few per query node is enough */
+    private static final int TLS_SESSION_CACHE_SIZE = 100;
+
+    private static final int TLS_SESSION_TIMEOUT_SECONDS = 24 * 60 * 60;
+
+    static final String DEFAULT_TRANSPORT = TRANSPORT_BLOCKING;
+
     /**
      * thread pool for background communication with QueryNode
      */
-    private final ExecutorService executor;
+    private final StatementExecutor executor;
 
     /**
      * Boolean variable to indicate state of connection
@@ -168,11 +395,21 @@ public class LmiConnection
 
     private final int batchSize;
 
+    private final int initialBatchSize;
+
+    private final boolean adaptiveBatchSize;
+
+    private final int minBatchSize;
+
+    private final int maxBatchSize;
+
+    private final long maxBatchBytes;
+
     private final String baseUrl;
 
     private final String queryUrl;
 
-    private final CloseableHttpClient client;
+    private final HttpSession httpSession;
 
     private final boolean noHostnameVerification;
 
@@ -182,16 +419,44 @@ public class LmiConnection
 
     private final int pollingTimeout;
 
+    private final int maxPollingPeriod;
+
     private boolean autoCommit = true;
 
     private final int concurrentStatements;
 
+    private final int prefetchPages;
+
+    /** one of the TRANSPORT_ constants, or the name of a class of transport */
+    private final String transport;
+
+    private final int ioThreads;
+
+    private final int poolSize;
+
+    private final int prewarmConnections;
+
+    /** results of the queries on time ranges that are over, null if disabled */
+    private final ResultCache resultCache;
+
+    private final long resultCacheMinAge;
+
+    private final int splitQueries;
+
+    private final long metadataCacheTtl;
+
+    /** null if the catalogs are not kept on disk */
+    private final String metadataSnapshotDir;
+
+    /** set when this connection created the transport rather than reuse the one of another connection */
+    private boolean transportCreated;
+
     private String buildVersion;
 
-    CloseableHttpClient getHttpClient()
+    HttpSession getHttpSession()
         throws SQLException {
         checkClosed();
-        return this.client;
+        return this.httpSession;
     }
 
     private final Properties clientInfo;
@@ -215,7 +480,13 @@ public class LmiConnection
         this.port = port;
         this.networkTimeoutMillis = Integer
             .parseInt( info.getProperty( PROPERTY_NETWORK_TIMEOUT, DEFAULT_NETWORK_TIMEOUT_MILIS ) );
-        this.batchSize = Integer.parseInt( info.getProperty( PROPERTY_BATCH_SIZE, DEFAULT_BATCH_SIZE ) );
+        String batchSizeProperty = info.getProperty( PROPERTY_BATCH_SIZE, DEFAULT_BATCH_SIZE );
+        this.adaptiveBatchSize = BATCH_SIZE_AUTO.equalsIgnoreCase( batchSizeProperty );
+        this.batchSize = Integer.parseInt( adaptiveBatchSize ? DEFAULT_BATCH_SIZE : batchSizeProperty );
+        this.initialBatchSize = Integer.parseInt( info.getProperty( PROPERTY_INITIAL_BATCH_SIZE, "0" ) );
+        this.minBatchSize = Integer.parseInt( info.getProperty( PROPERTY_MIN_BATCH_SIZE, DEFAULT_MIN_BATCH_SIZE ) );
+        this.maxBatchSize = Integer.parseInt( info.getProperty( PROPERTY_MAX_BATCH_SIZE, DEFAULT_MAX_BATCH_SIZE ) );
+        this.maxBatchBytes = Long.parseLong( info.getProperty( PROPERTY_MAX_BATCH_BYTES, DEFAULT_MAX_BATCH_BYTES ) );
         this.queryTimeout = Integer.parseInt( info.getProperty( PROPERTY_QUERY_TIMEOUT, DEFAULT_QUERY_TIMEOUT ) );
         this.noHostnameVerification = Boolean
             .parseBoolean( info.getProperty( PROPERTY_NO_HOSTNAME_VERIFICATION, DEFAULT_NO_HOSTNAME_VERIFICATION ) );
@@ -224,10 +495,59 @@ public class LmiConnection
         this.pollingPeriod = Integer.parseInt( ( info.getProperty( PROPERTY_POLLING_PERIOD, DEFAULT_POLL_PERIOD ) ) );
         this.pollingTimeout = Integer
             .parseInt( ( info.getProperty( PROPERTY_POLLING_TIMEOUT, Integer.toString( queryTimeout ) ) ) );
+        this.maxPollingPeriod = Math.max( pollingPeriod, Integer
+            .parseInt( info.getProperty( PROPERTY_MAX_POLLING_PERIOD, DEFAULT_MAX_POLL_PERIOD ) ) );
         this.concurrentStatements = Integer
             .parseInt( info.getProperty( PROPERTY_CONCURRENT_STATEMENTS, DEFAULT_CONCURRENT_STATEMENTS ) );
-
-        this.executor = Executors.newCachedThreadPool();
+        this.prefetchPages = Math
+            .max( 1, Integer.parseInt( info.getProperty( PROPERTY_PREFETCH_PAGES, DEFAULT_PREFETCH_PAGES ) ) );
+        String transportProperty = info.getProperty( PROPERTY_TRANSPORT, DEFAULT_TRANSPORT );
+        if ( TRANSPORT_NIO.equalsIgnoreCase( transportProperty ) ) {
+            this.transport = TRANSPORT_NIO;
+        }
+        else if ( TRANSPORT_JDK.equalsIgnoreCase( transportProperty ) ) {
+            this.transport = TRANSPORT_JDK;
+        }
+        else if ( TRANSPORT_LOCAL.equalsIgnoreCase( transportProperty ) ) {
+            this.transport = TRANSPORT_LOCAL;
+        }
+        else if ( TRANSPORT_BLOCKING.equalsIgnoreCase( transportProperty ) ) {
+            this.transport = TRANSPORT_BLOCKING;
+        }
+        else if ( transportProperty.indexOf( '.' ) > 0 ) {
+            // loaded when the transport is created
+            this.transport = transportProperty;
+        }
+        else {
+            throw new SQLException( "Unknown transport: " + transportProperty );
+        }
+        this.ioThreads = Integer.parseInt( info.getProperty( PROPERTY_IO_THREADS,
+                                                             Integer.toString( Runtime.getRuntime()
+                                                                 .availableProcessors() ) ) );
+        this.poolSize = Integer.parseInt( info.getProperty( PROPERTY_POOL_SIZE, DEFAULT_POOL_SIZE ) );
+        this.prewarmConnections = Integer
+            .parseInt( info.getProperty( PROPERTY_PREWARM_CONNECTIONS, DEFAULT_PREWARM_CONNECTIONS ) );
+
+        this.executor = StatementExecutor.create( concurrentStatements, Boolean
+            .parseBoolean( info.getProperty( PROPERTY_VIRTUAL_THREADS, DEFAULT_VIRTUAL_THREADS ) ) );
+
+        if ( Boolean.parseBoolean( info.getProperty( PROPERTY_RESULT_CACHE, DEFAULT_RESULT_CACHE ) ) ) {
+            this.resultCache = LmiJdbcDriver.getResultCache();
+            resultCache.configure( Long.parseLong( info.getProperty( PROPERTY_RESULT_CACHE_MAX_BYTES,
+                                                                     DEFAULT_RESULT_CACHE_MAX_BYTES ) ),
+                                   Integer.parseInt( info.getProperty( PROPERTY_RESULT_CACHE_MAX_ENTRIES,
+                                                                       DEFAULT_RESULT_CACHE_MAX_ENTRIES ) ) );
+        }
+        else {
+            this.resultCache = null;
+        }
+        this.splitQueries = Math
+            .max( 1, Integer.parseInt( info.getProperty( PROPERTY_SPLIT_QUERIES, DEFAULT_SPLIT_QUERIES ) ) );
+        this.metadataCacheTtl = Long
+            .parseLong( info.getProperty( PROPERTY_METADATA_CACHE_TTL, DEFAULT_METADATA_CACHE_TTL ) );
+        this.metadataSnapshotDir = info.getProperty( PROPERTY_METADATA_SNAPSHOT_DIR );
+        this.resultCacheMinAge = Long
+            .parseLong( info.getProperty( PROPERTY_RESULT_CACHE_MIN_AGE, DEFAULT_RESULT_CACHE_MIN_AGE ) );
 
         this.baseUrl = "https://" + hostname + ":" + port;
 
@@ -235,9 +555,63 @@ public class LmiConnection
 
         this.objectMapper = new ObjectMapper();
 
-        this.client = initHttpClient();
+        this.httpSession = initHttpSession();
+
+        try {
+            checkConnection( networkTimeoutMillis );
+        }
+        catch ( SQLException e ) {
+            httpSession.close();
+            executor.shutdown();
+            throw e;
+        }
 
-        checkConnection( networkTimeoutMillis );
+        if ( transportCreated && prewarmConnections > 1 ) {
+            prewarm( prewarmConnections );
+        }
+
+        if ( metadataSnapshotDir != null && metadataCacheTtl > 0 ) {
+            LmiJdbcDriver.getMetadataCache().loadSnapshot( this );
+        }
+    }
+
+    /**
+     * Open HTTP connections to the query node ahead of the queries, with as many concurrent requests for the
+     * configuration. The connection of {@link #checkConnection(int)} is counted in.
+     */
+    private void prewarm( int connections ) {
+        final CountDownLatch done = new CountDownLatch( connections );
+        for ( int i = 0; i < connections; i++ ) {
+            try {
+                executor.execute( new Runnable() {
+
+                    @Override
+                    public void run() {
+                        HttpGet getRequest = new HttpGet( baseUrl + "/api/v1/configuration" );
+                        getRequest.setConfig( RequestConfig.custom().setSocketTimeout( networkTimeoutMillis )
+                            .setConnectTimeout( networkTimeoutMillis ).build() );
+                        try {
+                            EntityUtils.consumeQuietly( httpSession.execute( getRequest ).getEntity() );
+                        }
+                        catch ( IOException e ) {
+                            System.err.println( "Failed to prewarm a connection: " + e );
+                        }
+                        finally {
+                            done.countDown();
+                        }
+                    }
+                } );
+            }
+            catch ( RejectedExecutionException e ) {
+                done.countDown();
+            }
+        }
+        try {
+            done.await( networkTimeoutMillis, TimeUnit.MILLISECONDS );
+        }
+        catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     private void checkConnection( int timeout )
@@ -249,8 +623,9 @@ public class LmiConnection
         getRequest.setHeader( "Accept", "application/json, text/plain " );
         getRequest.setHeader( "Content-Type", "application/json;charset=\"UTF-8\"" );
 
+        HttpResponse httpResponse = null;
         try {
-            HttpResponse httpResponse = getHttpClient().execute( getRequest );
+            httpResponse = getHttpSession().execute( getRequest );
             if ( httpResponse.getStatusLine().getStatusCode() == 401 ) {
                 throw new SQLException( "Authentication failed" );
             }
@@ -268,12 +643,37 @@ public class LmiConnection
         catch ( IOException e ) {
             throw new SQLException( e );
         }
+        finally {
+            if ( httpResponse != null ) {
+                EntityUtils.consumeQuietly( httpResponse.getEntity() );
+            }
+        }
     }
 
     int getBatchSize() {
         return batchSize;
     }
 
+    int getInitialBatchSize() {
+        return initialBatchSize;
+    }
+
+    boolean isAdaptiveBatchSize() {
+        return adaptiveBatchSize;
+    }
+
+    int getMinBatchSize() {
+        return minBatchSize;
+    }
+
+    int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    long getMaxBatchBytes() {
+        return maxBatchBytes;
+    }
+
     int getPollingPeriod() {
         return pollingPeriod;
     }
@@ -282,53 +682,108 @@ public class LmiConnection
         return pollingTimeout;
     }
 
-    static final class CertificateFingerprint {
-        final String algorithm;
+    int getMaxPollingPeriod() {
+        return maxPollingPeriod;
+    }
 
-        final byte[] signature;
+    int getPrefetchPages() {
+        return prefetchPages;
+    }
 
-        CertificateFingerprint( String textFingerprint ) {
-            String[] parts = textFingerprint.split( ":" );
-            algorithm = parts[0];
-            signature = new byte[parts.length - 1];
-            for ( int i = 0; i < signature.length; i++ ) {
-                signature[i] = (byte) ( Integer.parseInt( parts[i + 1], 16 ) & 0xff );
-            }
+    long getMetadataCacheTtl() {
+        return metadataCacheTtl;
+    }
+
+    String getMetadataSnapshotDir() {
+        return metadataSnapshotDir;
+    }
+
+    int getSplitQueries() {
+        return splitQueries;
+    }
+
+    ResultCache getResultCache() {
+        return resultCache;
+    }
+
+    /**
+     * Key of the results of the query in the result cache, null if they cannot be cached.
+     */
+    String getResultCacheKey( String sql ) {
+        if ( resultCache == null ) {
+            return null;
         }
+        return ResultCache.keyOf( hostname + ':' + port, username, sql, resultCacheMinAge );
+    }
+
+    /**
+     * Session on the transport shared with the other connections to the same query node with the same configuration.
+     */
+    private HttpSession initHttpSession()
+        throws SQLException {
+
+        CredentialsProvider credsProvider = new BasicCredentialsProvider();
+        credsProvider.setCredentials( new AuthScope( hostname, port ),
+                                      new UsernamePasswordCredentials( username, password ) );
+
+        // the query node uses basic authentication: send the credentials right away rather than wait for a challenge
+        AuthCache authCache = new BasicAuthCache();
+        authCache.put( new HttpHost( hostname, port, "https" ), new BasicScheme() );
+
+        HttpTransportRegistry registry = LmiJdbcDriver.getTransportRegistry();
+        String key = getTransportKey();
+        HttpTransport transport = registry.acquire( key, new HttpTransportRegistry.Factory() {
+
+            @Override
+            public HttpTransport create()
+                throws SQLException {
+                transportCreated = true;
+                return createTransport();
+            }
+        } );
+        return new HttpSession( registry, key, transport, credsProvider, authCache, executor, concurrentStatements );
     }
 
-    private CloseableHttpClient initHttpClient()
+    /**
+     * Everything the transport is configured with. The keystore password is part of it, so the key is never logged.
+     */
+    private String getTransportKey() {
+        StringBuilder key = new StringBuilder();
+        key.append( hostname ).append( ':' ).append( port );
+        key.append( '\n' ).append( transport ).append( ',' ).append( ioThreads )
+            .append( ',' ).append( poolSize ).append( ',' ).append( networkTimeoutMillis );
+        key.append( '\n' ).append( insecureMode ).append( ',' ).append( noHostnameVerification );
+        key.append( '\n' ).append( clientInfo.getProperty( PROPERTY_ACCEPTED_CERTIFICATE_FINGERPRINTS ) );
+        key.append( '\n' ).append( clientInfo.getProperty( PROPERTY_KEYSTORE_URL ) );
+        key.append( '\n' ).append( clientInfo.getProperty( PROPERTY_KEYSTORE_PASSWORD ) );
+        key.append( '\n' ).append( clientInfo.getProperty( PROPERTY_LOCAL_ROWS ) ).append( ',' )
+            .append( clientInfo.getProperty( PROPERTY_LOCAL_COLUMNS ) ).append( ',' )
+            .append( clientInfo.getProperty( PROPERTY_LOCAL_LATENCY ) ).append( ',' )
+            .append( clientInfo.getProperty( PROPERTY_LOCAL_PAGE_DELAYS ) );
+        return key.toString();
+    }
+
+    private HttpTransport createTransport()
         throws SQLException {
+        if ( TRANSPORT_LOCAL.equals( transport ) ) {
+            return new LocalHttpTransport( Long.parseLong( clientInfo.getProperty( PROPERTY_LOCAL_ROWS,
+                                                                                   DEFAULT_LOCAL_ROWS ) ),
+                                           clientInfo.getProperty( PROPERTY_LOCAL_COLUMNS, DEFAULT_LOCAL_COLUMNS ),
+                                           Long.parseLong( clientInfo.getProperty( PROPERTY_LOCAL_LATENCY,
+                                                                                   DEFAULT_LOCAL_LATENCY ) ),
+                                           clientInfo.getProperty( PROPERTY_LOCAL_PAGE_DELAYS,
+                                                                   DEFAULT_LOCAL_PAGE_DELAYS ) );
+        }
+        if ( !TRANSPORT_BLOCKING.equals( transport ) && !TRANSPORT_NIO.equals( transport )
+            && !TRANSPORT_JDK.equals( transport ) ) {
+            return createCustomTransport();
+        }
         try {
             SSLContextBuilder builder = new SSLContextBuilder();
             if ( clientInfo.containsKey( PROPERTY_ACCEPTED_CERTIFICATE_FINGERPRINTS ) ) {
                 String acceptedCertificateFingerprintsString = (String) clientInfo
                     .get( PROPERTY_ACCEPTED_CERTIFICATE_FINGERPRINTS );
-                String[] acceptedCertificateFingerprintsArray = acceptedCertificateFingerprintsString.split( "," );
-                final List<CertificateFingerprint> acceptedCertificateFingerprints = new ArrayList<>();
-                for ( String acceptedCertificateFingerprint : acceptedCertificateFingerprintsArray ) {
-                    acceptedCertificateFingerprints.add( new CertificateFingerprint( acceptedCertificateFingerprint ) );
-                }
-                builder.loadTrustMaterial( new TrustStrategy() {
-                    public boolean isTrusted( X509Certificate[] x509Certificates, String authType )
-                        throws CertificateException {
-                        x509Certificates[0].checkValidity();
-                        for ( CertificateFingerprint certificateFingerprint : acceptedCertificateFingerprints ) {
-                            try {
-                                if ( Arrays.equals( certificateFingerprint.signature,
-                                                    getFingerprint( certificateFingerprint.algorithm,
-                                                                    x509Certificates[0] ) ) ) {
-                                    return true;
-                                }
-                            }
-                            catch ( NoSuchAlgorithmException e ) {
-                                throw new CertificateException( "Unknown fingerprint algorithm: "
-                                    + certificateFingerprint.algorithm );
-                            }
-                        }
-                        throw new CertificateException( "Unaccepted Certificate Signature" );
-                    }
-                } );
+                builder.loadTrustMaterial( new FingerprintTrustStrategy( acceptedCertificateFingerprintsString ) );
             }
             else if ( clientInfo.containsKey( PROPERTY_KEYSTORE_URL )
                 && clientInfo.containsKey( PROPERTY_KEYSTORE_PASSWORD ) ) {
@@ -376,21 +831,41 @@ public class LmiConnection
                 hostnameVerifier = SSLConnectionSocketFactory.getDefaultHostnameVerifier();
             }
 
-            SSLConnectionSocketFactory sslConnectionSocketFactory = new SSLConnectionSocketFactory( builder.build(),
+            SSLContext sslContext = builder.build();
+
+            // keep the TLS sessions of the query node, so that new connections resume them instead of doing a full
+            // handshake; the transport and its context are shared by all the connections to the query node
+            SSLSessionContext sessionContext = sslContext.getClientSessionContext();
+            sessionContext.setSessionCacheSize( TLS_SESSION_CACHE_SIZE );
+            sessionContext.setSessionTimeout( TLS_SESSION_TIMEOUT_SECONDS );
+
+            if ( TRANSPORT_JDK.equals( transport ) ) {
+                if ( insecureMode || noHostnameVerification ) {
+                    // the JDK client always verifies the host name
+                    throw new SQLException( "The " + TRANSPORT_JDK + " transport cannot be used with "
+                        + PROPERTY_INSECURE_MODE + " or " + PROPERTY_NO_HOSTNAME_VERIFICATION );
+                }
+                return JdkHttpTransport.create( sslContext, networkTimeoutMillis );
+            }
+
+            if ( TRANSPORT_NIO.equals( transport ) ) {
+                return NioHttpTransport.create( sslContext, hostnameVerifier, poolSize, ioThreads,
+                                                networkTimeoutMillis );
+            }
+
+            SSLConnectionSocketFactory sslConnectionSocketFactory = new SSLConnectionSocketFactory( sslContext,
                                                                                                     hostnameVerifier );
-            CredentialsProvider credsProvider = new BasicCredentialsProvider();
-            credsProvider.setCredentials( new AuthScope( hostname, port ),
-                                          new UsernamePasswordCredentials( username, password ) );
 
             RegistryBuilder registryBuilder = RegistryBuilder.create();
             registryBuilder.register( "https", sslConnectionSocketFactory );
 
             PoolingHttpClientConnectionManager httpClientConnectionManager = new PoolingHttpClientConnectionManager( registryBuilder
                 .build() );
-            httpClientConnectionManager.setDefaultMaxPerRoute( concurrentStatements );
+            httpClientConnectionManager.setDefaultMaxPerRoute( poolSize );
+            httpClientConnectionManager.setMaxTotal( poolSize );
 
-            return HttpClients.custom().setConnectionManager( httpClientConnectionManager )
-                .setDefaultCredentialsProvider( credsProvider ).build();
+            return new BlockingHttpTransport( HttpClients.custom().setConnectionManager( httpClientConnectionManager )
+                .build() );
         }
         catch ( NoSuchAlgorithmException | KeyStoreException | KeyManagementException e ) {
             throw new SQLException( "Cannot initialize http client", e );
@@ -398,11 +873,49 @@ public class LmiConnection
 
     }
 
+    /**
+     * Instantiate the class named by the transport property, with the properties of the connection if it has a
+     * constructor for them.
+     */
+    private HttpTransport createCustomTransport()
+        throws SQLException {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        if ( classLoader == null ) {
+            classLoader = LmiConnection.class.getClassLoader();
+        }
+        try {
+            Class<?> transportClass = Class.forName( transport, true, classLoader );
+            if ( !HttpTransport.class.isAssignableFrom( transportClass ) ) {
+                throw new SQLException( "Transport " + transport + " does not extend " + HttpTransport.class.getName() );
+            }
+            try {
+                return (HttpTransport) transportClass.getConstructor( Properties.class ).newInstance( clientInfo );
+            }
+            catch ( NoSuchMethodException e ) {
+                return (HttpTransport) transportClass.getConstructor().newInstance();
+            }
+        }
+        catch ( InvocationTargetException e ) {
+            throw new SQLException( "Cannot create transport " + transport, e.getCause() );
+        }
+        catch ( ClassNotFoundException | NoSuchMethodException | InstantiationException | IllegalAccessException e ) {
+            throw new SQLException( "Cannot create transport " + transport, e );
+        }
+    }
+
     /** access to the executor service for the connection */
     ExecutorService getExecutor() {
         return this.executor;
     }
 
+    /**
+     * Number of background tasks of the connection running and waiting for a thread, to size
+     * {@link #PROPERTY_CONCURRENT_STATEMENTS}.
+     */
+    public LmiExecutorMetrics getExecutorMetrics() {
+        return executor.getMetrics();
+    }
+
     private void checkClosed()
         throws SQLException {
         if ( isClosed() ) {
@@ -467,10 +980,7 @@ public class LmiConnection
             return;
         closed = true;
         try {
-            client.close();
-        }
-        catch ( IOException e ) {
-            throw new SQLException( "Failed to close the connection.", e );
+            httpSession.close();
         }
         finally {
             this.executor.shutdown();
@@ -824,14 +1334,6 @@ public class LmiConnection
         return this.username;
     }
 
-    private static byte[] getFingerprint( String algorithm, X509Certificate cert )
-        throws NoSuchAlgorithmException, CertificateEncodingException {
-        MessageDigest md = MessageDigest.getInstance( algorithm );
-        byte[] der = cert.getEncoded();
-        md.update( der );
-        return md.digest();
-    }
-
     int getQueryTimeout() {
         return queryTimeout;
     }
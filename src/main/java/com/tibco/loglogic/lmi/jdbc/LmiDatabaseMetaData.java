@@ -29,6 +29,14 @@ public class LmiDatabaseMetaData
         this.lmiConnection = lmiConnection;
     }
 
+    /**
+     * Fetch the catalogs of the models and of their columns again on the next calls, rather than use the ones kept for
+     * {@link LmiConnection#PROPERTY_METADATA_CACHE_TTL}, for instance after a model was added.
+     */
+    public void refresh() {
+        LmiJdbcDriver.getMetadataCache().refresh( lmiConnection );
+    }
+
     @Override
     public <T> T unwrap( Class<T> iface )
         throws SQLException {
@@ -839,6 +847,12 @@ public class LmiDatabaseMetaData
         final String tableCondition = tableNamePattern != null ? "| llc_name LIKE ? " : "";
         final String sortStatement = " | SORT BY llc_name ";
 
+        if ( lmiConnection.getMetadataCacheTtl() > 0 ) {
+            return LmiJdbcDriver.getMetadataCache()
+                .query( lmiConnection, useStatement + columnsStatement + sortStatement, new String[] { "TABLE_NAME" },
+                        new String[] { tableNamePattern }, true );
+        }
+
         final String query = useStatement + columnsStatement + tableCondition + sortStatement;
         final PreparedStatement ps = getConnection().prepareStatement( query );
         if ( tableNamePattern != null ) {
@@ -917,6 +931,13 @@ public class LmiDatabaseMetaData
         final String columnCondition = columnNamePattern != null ? "| llc_name LIKE ? " : "";
         final String sortStatement = " | SORT BY llc_name ";
 
+        if ( lmiConnection.getMetadataCacheTtl() > 0 ) {
+            return LmiJdbcDriver.getMetadataCache()
+                .query( lmiConnection, useStatement + columnsStatement + sortStatement,
+                        new String[] { "TABLE_NAME", "COLUMN_NAME" },
+                        new String[] { tableNamePattern, columnNamePattern }, true );
+        }
+
         final String query = useStatement + columnsStatement + tableCondition + columnCondition + sortStatement;
         final PreparedStatement ps = getConnection().prepareStatement( query );
         if ( tableNamePattern != null ) {
@@ -948,6 +969,13 @@ public class LmiDatabaseMetaData
         final String columnCondition = columnNamePattern != null ? "| llc_name EQUALS ? " : "";
         final String sortStatement = " | SORT BY llc_name ";
 
+        if ( lmiConnection.getMetadataCacheTtl() > 0 ) {
+            return LmiJdbcDriver.getMetadataCache()
+                .query( lmiConnection, useStatement + columnsStatement + sortStatement,
+                        new String[] { "TABLE_NAME", "COLUMN_NAME" }, new String[] { table, columnNamePattern },
+                        false );
+        }
+
         final String query = useStatement + columnsStatement + tableCondition + columnCondition + sortStatement;
         final PreparedStatement ps = getConnection().prepareStatement( query );
         if ( table != null ) {
@@ -976,6 +1004,12 @@ public class LmiDatabaseMetaData
         final String tableCondition = tableNamePattern != null ? "| llc_name LIKE ? " : "";
         final String sortStatement = " | SORT BY llc_name ";
 
+        if ( lmiConnection.getMetadataCacheTtl() > 0 ) {
+            return LmiJdbcDriver.getMetadataCache()
+                .query( lmiConnection, useStatement + columnsStatement + sortStatement, new String[] { "TABLE_NAME" },
+                        new String[] { tableNamePattern }, true );
+        }
+
         final String query = useStatement + columnsStatement + tableCondition + sortStatement;
         final PreparedStatement ps = getConnection().prepareStatement( query );
         if ( tableNamePattern != null ) {
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2014-2018 TIBCO Software Inc. All Rights Reserved.
+ * Licensed under a BSD-type license. See TIBCO LICENSE.txt for license text.
+ */
+package com.tibco.loglogic.lmi.jdbc;
+
+/**
+ * Snapshot of the background tasks of a connection, see {@link LmiConnection#getExecutorMetrics()}.
+ */
+public final class LmiExecutorMetrics {
+
+    private final boolean virtualThreads;
+
+    private final int maxThreads;
+
+    private final int activeTasks;
+
+    private final int queuedTasks;
+
+    private final int peakQueuedTasks;
+
+    private final long completedTasks;
+
+    LmiExecutorMetrics( boolean virtualThreads, int maxThreads, int activeTasks, int queuedTasks, int peakQueuedTasks,
+                        long completedTasks ) {
+        this.virtualThreads = virtualThreads;
+        this.maxThreads = maxThreads;
+        this.activeTasks = activeTasks;
+        this.queuedTasks = queuedTasks;
+        this.peakQueuedTasks = peakQueuedTasks;
+        this.completedTasks = completedTasks;
+    }
+
+    /** true when each task runs on its own virtual thread */
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /** maximum number of threads of the pool, 0 with virtual threads */
+    public int getMaxThreads() {
+        return maxThreads;
+    }
+
+    /** number of tasks running */
+    public int getActiveTasks() {
+        return activeTasks;
+    }
+
+    /** number of tasks waiting for a thread */
+    public int getQueuedTasks() {
+        return queuedTasks;
+    }
+
+    /** highest number of tasks waiting for a thread since the connection was opened */
+    public int getPeakQueuedTasks() {
+        return peakQueuedTasks;
+    }
+
+    /** number of tasks run since the connection was opened */
+    public long getCompletedTasks() {
+        return completedTasks;
+    }
+
+    @Override
+    public String toString() {
+        return "LmiExecutorMetrics{virtualThreads=" + virtualThreads + ", maxThreads=" + maxThreads + ", activeTasks="
+            + activeTasks + ", queuedTasks=" + queuedTasks + ", peakQueuedTasks=" + peakQueuedTasks
+            + ", completedTasks=" + completedTasks + "}";
+    }
+}
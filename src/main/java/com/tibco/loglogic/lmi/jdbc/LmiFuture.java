@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2014-2018 TIBCO Software Inc. All Rights Reserved.
+ * Licensed under a BSD-type license. See TIBCO LICENSE.txt for license text.
+ */
+package com.tibco.loglogic.lmi.jdbc;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Result of an asynchronous operation of the driver, e.g. {@link LmiStatement#executeQueryAsync(String)}.
+ * <p>
+ * Besides the blocking {@link Future} methods, callbacks can be registered to be notified of the completion without
+ * parking a thread. The operations cannot be cancelled through the future, use {@link java.sql.Statement#cancel()}.
+ */
+public class LmiFuture<T>
+    implements Future<T> {
+
+    private final CountDownLatch latch = new CountDownLatch( 1 );
+
+    private final List<LmiCallback<? super T>> callbacks = new ArrayList<>();
+
+    private boolean done;
+
+    private T result;
+
+    private SQLException failure;
+
+    LmiFuture() {
+    }
+
+    static <T> LmiFuture<T> completed( T result ) {
+        LmiFuture<T> future = new LmiFuture<>();
+        future.complete( result );
+        return future;
+    }
+
+    static <T> LmiFuture<T> failed( SQLException failure ) {
+        LmiFuture<T> future = new LmiFuture<>();
+        future.fail( failure );
+        return future;
+    }
+
+    /**
+     * Register a callback, invoked right away when the operation is already complete.
+     */
+    public void addCallback( LmiCallback<? super T> callback ) {
+        synchronized ( this ) {
+            if ( !done ) {
+                callbacks.add( callback );
+                return;
+            }
+        }
+        notifyCallback( callback );
+    }
+
+    void complete( T result ) {
+        finish( result, null );
+    }
+
+    void fail( SQLException failure ) {
+        finish( null, failure );
+    }
+
+    private void finish( T result, SQLException failure ) {
+        List<LmiCallback<? super T>> toNotify;
+        synchronized ( this ) {
+            if ( done ) {
+                return;
+            }
+            this.result = result;
+            this.failure = failure;
+            this.done = true;
+            toNotify = new ArrayList<>( callbacks );
+            callbacks.clear();
+        }
+        latch.countDown();
+        for ( LmiCallback<? super T> callback : toNotify ) {
+            notifyCallback( callback );
+        }
+    }
+
+    private void notifyCallback( LmiCallback<? super T> callback ) {
+        try {
+            if ( failure != null ) {
+                callback.onFailure( failure );
+            }
+            else {
+                callback.onSuccess( result );
+            }
+        }
+        catch ( RuntimeException e ) {
+            System.err.println( "Callback failed: " + e );
+        }
+    }
+
+    @Override
+    public boolean cancel( boolean mayInterruptIfRunning ) {
+        return false;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return false;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return done;
+    }
+
+    @Override
+    public T get()
+        throws InterruptedException, ExecutionException {
+        latch.await();
+        return getResult();
+    }
+
+    @Override
+    public T get( long timeout, TimeUnit unit )
+        throws InterruptedException, ExecutionException, TimeoutException {
+        if ( !latch.await( timeout, unit ) ) {
+            throw new TimeoutException();
+        }
+        return getResult();
+    }
+
+    private synchronized T getResult()
+        throws ExecutionException {
+        if ( failure != null ) {
+            throw new ExecutionException( failure );
+        }
+        return result;
+    }
+}
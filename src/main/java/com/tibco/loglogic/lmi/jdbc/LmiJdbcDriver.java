@@ -54,6 +54,15 @@ public class LmiJdbcDriver
 
     private static final String DRIVER_URL_START = "jdbc:lmi:";
 
+    /** HTTP transports shared by the connections of the driver */
+    private static final HttpTransportRegistry TRANSPORT_REGISTRY = new HttpTransportRegistry();
+
+    /** results of queries shared by the connections that enable it */
+    private static final ResultCache RESULT_CACHE = new ResultCache();
+
+    /** catalogs of the models and of their columns, for the meta-data of the connections */
+    private static final MetadataCache METADATA_CACHE = new MetadataCache();
+
     /*
      * This static block loads the JDBC driver.
      */
@@ -188,6 +197,18 @@ public class LmiJdbcDriver
         throw new SQLFeatureNotSupportedException( "getParentLogger()" );
     }
 
+    static HttpTransportRegistry getTransportRegistry() {
+        return TRANSPORT_REGISTRY;
+    }
+
+    static ResultCache getResultCache() {
+        return RESULT_CACHE;
+    }
+
+    static MetadataCache getMetadataCache() {
+        return METADATA_CACHE;
+    }
+
     @SuppressWarnings("unused")
     public static String getDriverName() {
         return DRIVER_NAME;
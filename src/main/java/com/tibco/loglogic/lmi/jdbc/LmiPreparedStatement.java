@@ -104,7 +104,17 @@ public class LmiPreparedStatement
         return executeQuery( substituteParams() );
     }
 
-    private String substituteParams()
+    /**
+     * Start the query with substituted arguments without blocking the caller, see
+     * {@link #executeQueryAsync(String)}.
+     */
+    public LmiFuture<LmiResultSet> executeQueryAsync()
+        throws SQLException {
+        return executeQueryAsync( substituteParams() );
+    }
+
+    /** query with the parameters replaced by their values */
+    String substituteParams()
         throws SQLException {
 
         if ( this.parameterIndxes.length == 0 ) {
@@ -154,9 +164,9 @@ public class LmiPreparedStatement
         if ( object instanceof String ) {
             return escapeString( (String) object );
         }
-        if ( object instanceof Date ) {
-            // encode Data as Long
-            return String.valueOf( ( (Date) object ).getTime() );
+        if ( object instanceof java.util.Date ) {
+            // encode Date and Timestamp as Long
+            return String.valueOf( ( (java.util.Date) object ).getTime() );
         }
 
         // unknown - return null
@@ -33,7 +33,6 @@ import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -44,11 +43,14 @@ import com.tibco.loglogic.lmi.jdbc.QueryPostExecutor.QueryMetadata;
  * Apollo ResultSet.
  */
 public class LmiResultSet
-    implements ResultSet {
+    implements ResultSet, LmiBulkReader {
 
-    private final Map<String, Integer> fieldMap;
+    private final ColumnLabels columnLabels;
 
-    private final ResultSetMetaData resultSetMetaData;
+    private final LmiResultSetMetaData resultSetMetaData;
+
+    /** reader of the values of each column for getObject, according to its type */
+    private final ObjectGetter[] objectGetters;
 
     private final LmiStatement statement;
 
@@ -56,17 +58,35 @@ public class LmiResultSet
 
     private final int queryTimeoutMillis;
 
-    private List<String> currentRow = null;
+    /** index of the current row in the current buffer, -1 before the first row */
+    private int currentRow = -1;
 
     private QueryMetadata metadata;
 
+    private final int[] columnStorage;
+
     private int bufferIndex = -1;
 
-    private List<List<String>> currentBuffer;
+    private ResultsPage currentBuffer;
+
+    private final ResultsPageQueue pageQueue;
+
+    /** result sets of the parts of a split query, read one after the other, null if the query was not split */
+    private final List<LmiResultSet> parts;
+
+    /** part being read */
+    private volatile int partIndex;
+
+    /** next page, taken from the queue by {@link #nextBatchAsync()} */
+    private ResultsGetExecutor pendingPage;
 
-    private ResultsGetExecutor resultsGetExecutor;
+    /** first row of the current buffer in the batch of {@link #nextBatch()} */
+    private int batchStart;
 
-    boolean closed = false;
+    /** number of rows of the batch of {@link #nextBatch()}, 0 if there is none */
+    private int batchRows;
+
+    volatile boolean closed = false;
 
     private boolean wasNull = false;
 
@@ -74,11 +94,30 @@ public class LmiResultSet
 
     private SQLWarning sqlWarning = null;
 
+    /** last progress of the query reported by the server, in percent */
+    private volatile int progress;
+
+    /** last time spent on the query reported by the server, in milliseconds */
+    private volatile int timeSpent;
+
+    /** number of rows received from the server so far */
+    private volatile long rowsReceived;
+
     // This is set when the server tells us the query is finished and stops us making another request. Also, the server
     // will delete any query that has completed, so if this field is 'true' there is no need to delete the query on
     // close.
     private boolean eofReached = false;
 
+    /** cache of the results, null if they are not to be cached */
+    private ResultCache resultCache;
+
+    private String cacheKey;
+
+    /** pages received so far, to be cached at the end of the results */
+    private List<ResultsPage> cachedPages;
+
+    private long cachedBytes;
+
     LmiResultSet( LmiStatement statement, QueryMetadata metadata, int batchSize, int queryTimeoutMillis )
         throws SQLException {
 
@@ -87,53 +126,178 @@ public class LmiResultSet
         this.batchSize = batchSize;
         this.queryTimeoutMillis = queryTimeoutMillis;
 
-        this.fieldMap = getFieldMap( metadata.getColumns() );
+        this.columnLabels = new ColumnLabels( metadata.getColumns() );
         this.resultSetMetaData = new LmiResultSetMetaData( metadata );
+        this.objectGetters = getObjectGetters( resultSetMetaData.getValueTypes() );
+        this.columnStorage = ResultsPage.storageOf( metadata.getColumns() );
+
+        LmiConnection connection = (LmiConnection) statement.getConnection();
+        this.pageQueue = new ResultsPageQueue( connection, statement, this, metadata.getQueryId(),
+                                               connection.getPrefetchPages(),
+                                               BatchSizer.forConnection( connection, batchSize ) );
+        this.parts = null;
+        this.staticContent = false;
+        pageQueue.fill();
+    }
 
-        this.resultsGetExecutor = submitRequestToServer();
+    /**
+     * Rows of the parts of a split query, one part after the other. The parts are fetching their pages already.
+     */
+    LmiResultSet( LmiStatement statement, List<LmiResultSet> parts ) {
+        LmiResultSet first = parts.get( 0 );
+        this.statement = statement;
+        this.metadata = first.metadata;
+        this.batchSize = first.batchSize;
+        this.queryTimeoutMillis = first.queryTimeoutMillis;
+        this.columnLabels = first.columnLabels;
+        this.resultSetMetaData = first.resultSetMetaData;
+        this.objectGetters = first.objectGetters;
+        this.columnStorage = first.columnStorage;
+        this.pageQueue = null;
+        this.parts = parts;
         this.staticContent = false;
     }
 
     LmiResultSet( ColumnDesc[] columns, String[][] values )
         throws SQLException {
+        this( null, new QueryMetadata(), Arrays.asList( columns ), values, null );
+    }
 
-        this.metadata = new QueryMetadata();
-        metadata.setColumns( Arrays.asList( columns ) );
-        currentBuffer = new ArrayList<>();
-        for ( String[] valuesInRow : values ) {
-            currentBuffer.add( Arrays.asList( valuesInRow ) );
-        }
+    /**
+     * Rows already received, as a whole.
+     */
+    LmiResultSet( List<ColumnDesc> columns, ResultsPage rows )
+        throws SQLException {
+        this( null, new QueryMetadata(), columns, null, rows );
+    }
+
+    /**
+     * Results of a query taken from the result cache.
+     */
+    LmiResultSet( LmiStatement statement, ResultCache.Entry cached )
+        throws SQLException {
+        this( statement, cached.metadata, cached.metadata.getColumns(), null, cached.rows );
+    }
+
+    private LmiResultSet( LmiStatement statement, QueryMetadata metadata, List<ColumnDesc> columns,
+                          String[][] values, ResultsPage rows )
+        throws SQLException {
+
+        this.metadata = metadata;
+        metadata.setColumns( columns );
+        this.columnStorage = ResultsPage.storageOf( metadata.getColumns() );
+        currentBuffer = rows != null ? rows : ResultsPage.fromRows( columnStorage, values );
         this.batchSize = 0;
-        this.statement = null;
+        this.statement = statement;
         this.queryTimeoutMillis = 0;
-        this.fieldMap = getFieldMap( metadata.getColumns() );
+        this.columnLabels = new ColumnLabels( metadata.getColumns() );
         this.resultSetMetaData = new LmiResultSetMetaData( metadata );
+        this.objectGetters = getObjectGetters( resultSetMetaData.getValueTypes() );
 
-        this.resultsGetExecutor = null;
+        this.pageQueue = null;
+        this.parts = null;
         this.staticContent = true;
     }
 
-    private static Map<String, Integer> getFieldMap( List<ColumnDesc> columns ) {
-        Map<String, Integer> map = new HashMap<>( columns.size() );
-        for ( int i = 0; i < columns.size(); i++ ) {
-            String name = columns.get( i ).getName().toLowerCase();
-            if ( !map.containsKey( name ) ) {
-                map.put( name, i + 1 );
-            }
-        }
-        return map;
+    /**
+     * Reader of the values of a column as objects.
+     */
+    private abstract static class ObjectGetter {
+
+        abstract Object get( LmiResultSet resultSet, int columnIndex )
+            throws SQLException;
     }
 
-    private ResultsGetExecutor submitRequestToServer()
-        throws SQLException {
+    private static final ObjectGetter STRING_GETTER = new ObjectGetter() {
 
-        LmiConnection connection = (LmiConnection) statement.getConnection();
+        @Override
+        Object get( LmiResultSet resultSet, int columnIndex )
+            throws SQLException {
+            return resultSet.getString( columnIndex );
+        }
+    };
+
+    private static final ObjectGetter DATE_GETTER = new ObjectGetter() {
+
+        @Override
+        Object get( LmiResultSet resultSet, int columnIndex )
+            throws SQLException {
+            return resultSet.getDate( columnIndex );
+        }
+    };
+
+    private static final ObjectGetter INT_GETTER = new ObjectGetter() {
+
+        @Override
+        Object get( LmiResultSet resultSet, int columnIndex )
+            throws SQLException {
+            return resultSet.getInt( columnIndex );
+        }
+    };
 
-        ResultsGetExecutor resultsGetExecutor = new ResultsGetExecutor( connection, statement, this,
-                                                                        metadata.getQueryId(), batchSize );
+    private static final ObjectGetter BIG_DECIMAL_GETTER = new ObjectGetter() {
 
-        connection.getExecutor().execute( resultsGetExecutor );
-        return resultsGetExecutor;
+        @Override
+        Object get( LmiResultSet resultSet, int columnIndex )
+            throws SQLException {
+            return resultSet.getBigDecimal( columnIndex );
+        }
+    };
+
+    private static final ObjectGetter DOUBLE_GETTER = new ObjectGetter() {
+
+        @Override
+        Object get( LmiResultSet resultSet, int columnIndex )
+            throws SQLException {
+            return resultSet.getDouble( columnIndex );
+        }
+    };
+
+    private static final ObjectGetter BOOLEAN_GETTER = new ObjectGetter() {
+
+        @Override
+        Object get( LmiResultSet resultSet, int columnIndex )
+            throws SQLException {
+            return resultSet.getBoolean( columnIndex );
+        }
+    };
+
+    private static final ObjectGetter UNSUPPORTED_GETTER = new ObjectGetter() {
+
+        @Override
+        Object get( LmiResultSet resultSet, int columnIndex )
+            throws SQLException {
+            throw new SQLException( "column type not supported" );
+        }
+    };
+
+    private static ObjectGetter[] getObjectGetters( int[] types ) {
+        ObjectGetter[] getters = new ObjectGetter[types.length];
+        for ( int i = 0; i < types.length; i++ ) {
+            switch ( types[i] ) {
+                case Types.VARCHAR:
+                    getters[i] = STRING_GETTER;
+                    break;
+                case Types.TIMESTAMP:
+                    getters[i] = DATE_GETTER;
+                    break;
+                case Types.INTEGER:
+                    getters[i] = INT_GETTER;
+                    break;
+                case Types.BIGINT:
+                    getters[i] = BIG_DECIMAL_GETTER;
+                    break;
+                case Types.DOUBLE:
+                    getters[i] = DOUBLE_GETTER;
+                    break;
+                case Types.BOOLEAN:
+                    getters[i] = BOOLEAN_GETTER;
+                    break;
+                default:
+                    getters[i] = UNSUPPORTED_GETTER;
+            }
+        }
+        return getters;
     }
 
     @Override
@@ -142,15 +306,10 @@ public class LmiResultSet
         checkClosed();
         try {
 
-            if ( bufferIndex != -1 && bufferIndex < currentBuffer.size() ) {
+            if ( bufferIndex != -1 && bufferIndex < currentBuffer.getRowCount() ) {
 
                 // still processing the current buffer
-                currentRow = currentBuffer.get( bufferIndex );
-                // submit a request for the next resultsGetExecutor while processing this one
-                if ( !eofReached && resultsGetExecutor == null ) {
-                    resultsGetExecutor = submitRequestToServer();
-                }
-
+                currentRow = bufferIndex;
                 bufferIndex++;
                 return true;
             }
@@ -159,8 +318,8 @@ public class LmiResultSet
                 if ( staticContent ) {
                     eofReached = true;
                     bufferIndex++;
-                    if ( currentBuffer.size() > 0 ) {
-                        currentRow = currentBuffer.get( 0 );
+                    if ( currentBuffer.getRowCount() > 0 ) {
+                        currentRow = 0;
                         bufferIndex = 1;
                         return true;
                     }
@@ -168,26 +327,7 @@ public class LmiResultSet
                         return false;
                 }
 
-                if ( resultsGetExecutor == null ) {
-                    // in case the previous execution threw an error
-                    resultsGetExecutor = submitRequestToServer();
-                }
-
-                // this will block until we receive response from server
-                List<List<String>> buffer = resultsGetExecutor.getBuffer();
-
-                if ( buffer == null && resultsGetExecutor.getResultsError() != null ) {
-                    final String errorMessage = resultsGetExecutor.getResultsError().getErrorMessage();
-                    resultsGetExecutor = null;
-                    throw new SQLException( errorMessage );
-                }
-
-                if ( resultsGetExecutor.isEofReached() ) {
-                    eofReached = true;
-                }
-
-                // reset the task
-                resultsGetExecutor = null;
+                ResultsPage buffer = fetchNextPage();
 
                 final boolean next = switchBuffers( buffer );
 
@@ -206,12 +346,361 @@ public class LmiResultSet
         }
     }
 
-    private boolean switchBuffers( List<List<String>> buffer ) {
+    /**
+     * Next page from the server, blocking until it is received. Null if there are no more pages.
+     */
+    private ResultsPage fetchNextPage()
+        throws SQLException, InterruptedException {
+
+        if ( parts != null ) {
+            return fetchNextPartPage();
+        }
+
+        // the next page is being fetched, or already waiting in the read-ahead queue
+        ResultsGetExecutor page = pendingPage != null ? pendingPage : pageQueue.take();
+        pendingPage = null;
+        if ( page == null ) {
+            eofReached = true;
+            return null;
+        }
+
+        // this will block until we receive response from server
+        ResultsPage buffer = page.getBuffer();
+
+        if ( buffer == null && page.getResultsError() != null ) {
+            // in case the previous execution threw an error, allow fetching again
+            pageQueue.reset();
+            cachedPages = null;
+            throw new SQLException( page.getResultsError().getErrorMessage() );
+        }
+
+        if ( page.isEofReached() ) {
+            eofReached = true;
+        }
+        cachePage( buffer );
+
+        return buffer;
+    }
+
+    /**
+     * Next non-empty page of the parts of a split query, blocking until it is received. Null if there are no more
+     * pages.
+     */
+    private ResultsPage fetchNextPartPage()
+        throws SQLException {
+        while ( partIndex < parts.size() ) {
+            ResultsPage page = parts.get( partIndex ).nextPage();
+            if ( page == null ) {
+                partIndex++;
+            }
+            else if ( page.getRowCount() > 0 ) {
+                cachePage( page );
+                return page;
+            }
+        }
+        eofReached = true;
+        cachePage( null );
+        return null;
+    }
+
+    /**
+     * Keep the page for the result cache, if the results are to be cached, and cache them after the last page.
+     */
+    private void cachePage( ResultsPage page ) {
+        if ( cachedPages == null ) {
+            return;
+        }
+        if ( page != null ) {
+            cachedPages.add( page );
+            cachedBytes += page.estimateBytes();
+            if ( cachedBytes > resultCache.getMaxBytes() ) {
+                // too large for the cache anyway
+                cachedPages = null;
+                return;
+            }
+        }
+        if ( eofReached ) {
+            resultCache.put( cacheKey, metadata.getColumns(), cachedPages );
+            cachedPages = null;
+        }
+    }
+
+    /**
+     * Keep the pages of the results, to put them in the result cache once they are all received.
+     */
+    void cacheResults( ResultCache cache, String key ) {
+        this.resultCache = cache;
+        this.cacheKey = key;
+        this.cachedPages = new ArrayList<>();
+    }
+
+    /**
+     * Take the next page as a whole, instead of row by row, blocking until it is received. Null if there are no more
+     * pages.
+     */
+    ResultsPage nextPage()
+        throws SQLException {
+        checkClosed();
+
+        if ( eofReached ) {
+            return null;
+        }
+        if ( staticContent ) {
+            eofReached = true;
+            bufferIndex = currentBuffer.getRowCount();
+            return currentBuffer;
+        }
+
+        try {
+            ResultsPage page = fetchNextPage();
+            if ( page != null ) {
+                currentBuffer = page;
+                bufferIndex = page.getRowCount();
+            }
+            return page;
+        }
+        catch ( InterruptedException e ) {
+            throw new SQLException( "Error fetching results", e );
+        }
+    }
+
+    @Override
+    public int nextBatch()
+        throws SQLException {
+        checkClosed();
+
+        batchRows = 0;
+        if ( bufferIndex != -1 && bufferIndex < currentBuffer.getRowCount() ) {
+            // rows of the current buffer not read yet
+            batchStart = bufferIndex;
+        }
+        else {
+            ResultsPage page = nextPage();
+            while ( page != null && page.getRowCount() == 0 ) {
+                page = nextPage();
+            }
+            if ( page == null ) {
+                return 0;
+            }
+            batchStart = 0;
+        }
+        batchRows = currentBuffer.getRowCount() - batchStart;
+
+        // next() goes on after the batch, the getters read its last row
+        bufferIndex = currentBuffer.getRowCount();
+        currentRow = bufferIndex - 1;
+        return batchRows;
+    }
+
+    @Override
+    public int getBatchSize() {
+        return batchRows;
+    }
+
+    @Override
+    public LmiRowBatch getBatch()
+        throws SQLException {
+        checkClosed();
+        if ( batchRows == 0 ) {
+            return ResultsPage.fromRows( columnStorage, new String[0][] );
+        }
+        if ( batchStart == 0 ) {
+            // pages are never modified once received
+            return currentBuffer;
+        }
+        int[] rows = new int[batchRows];
+        for ( int i = 0; i < batchRows; i++ ) {
+            rows[i] = batchStart + i;
+        }
+        return currentBuffer.select( rows, batchRows );
+    }
+
+    @Override
+    public void fillLongs( int columnIndex, long[] target, int offset )
+        throws SQLException {
+        int column = batchColumn( columnIndex, target.length, offset );
+        try {
+            currentBuffer.fillLongs( column, batchStart, batchRows, target, offset );
+        }
+        catch ( NumberFormatException nfe ) {
+            throw new SQLException( nfe );
+        }
+    }
+
+    @Override
+    public void fillInts( int columnIndex, int[] target, int offset )
+        throws SQLException {
+        int column = batchColumn( columnIndex, target.length, offset );
+        try {
+            currentBuffer.fillInts( column, batchStart, batchRows, target, offset );
+        }
+        catch ( NumberFormatException nfe ) {
+            throw new SQLException( nfe );
+        }
+    }
+
+    @Override
+    public void fillDoubles( int columnIndex, double[] target, int offset )
+        throws SQLException {
+        int column = batchColumn( columnIndex, target.length, offset );
+        try {
+            currentBuffer.fillDoubles( column, batchStart, batchRows, target, offset );
+        }
+        catch ( NumberFormatException nfe ) {
+            throw new SQLException( nfe );
+        }
+    }
 
-        if ( buffer != null && buffer.size() > 0 ) {
+    @Override
+    public void fillBooleans( int columnIndex, boolean[] target, int offset )
+        throws SQLException {
+        int column = batchColumn( columnIndex, target.length, offset );
+        currentBuffer.fillBooleans( column, batchStart, batchRows, target, offset );
+    }
+
+    @Override
+    public void fillStrings( int columnIndex, String[] target, int offset )
+        throws SQLException {
+        int column = batchColumn( columnIndex, target.length, offset );
+        currentBuffer.fillStrings( column, batchStart, batchRows, target, offset );
+    }
+
+    @Override
+    public void fillNulls( int columnIndex, boolean[] target, int offset )
+        throws SQLException {
+        int column = batchColumn( columnIndex, target.length, offset );
+        currentBuffer.fillNulls( column, batchStart, batchRows, target, offset );
+    }
+
+    /**
+     * Validates the column index and the room in the target array for the batch of {@link #nextBatch()}.
+     *
+     * @return the index of the column in the current buffer
+     */
+    private int batchColumn( int index, int length, int offset )
+        throws SQLException {
+        checkClosed();
+        if ( ( index <= 0 ) || ( index > columnStorage.length ) ) {
+            throw new SQLException( "Invalid column index: " + index );
+        }
+        if ( offset < 0 || length - offset < batchRows ) {
+            throw new SQLException( "No room for " + batchRows + " values from offset " + offset + " in an array of "
+                + length );
+        }
+        return index - 1;
+    }
+
+    /**
+     * Publisher of the rows of this result set, batch by batch, requesting the following batches from the server as
+     * the subscriber signals demand. The result set must not have been read with {@link #next()}.
+     */
+    public LmiRowPublisher asPublisher()
+        throws SQLException {
+        checkClosed();
+        if ( currentRow >= 0 || bufferIndex != -1 ) {
+            throw new SQLException( "Result set is already being read" );
+        }
+        if ( pageQueue != null ) {
+            pageQueue.setOnDemand();
+        }
+        if ( parts != null ) {
+            for ( LmiResultSet part : parts ) {
+                part.pageQueue.setOnDemand();
+            }
+        }
+        return new LmiRowPublisher( this );
+    }
+
+    /**
+     * Make the next batch of rows available without blocking the caller.
+     * <p>
+     * The future completes with the number of rows that {@link #next()} can then return without waiting for the
+     * server, 0 at the end of the results, or fails with the error of the server.
+     */
+    public LmiFuture<Integer> nextBatchAsync()
+        throws SQLException {
+        checkClosed();
+
+        if ( bufferIndex != -1 && bufferIndex < currentBuffer.getRowCount() ) {
+            // rows left in the current buffer
+            return LmiFuture.completed( currentBuffer.getRowCount() - bufferIndex );
+        }
+        if ( staticContent ) {
+            return LmiFuture.completed( eofReached ? 0 : currentBuffer.getRowCount() );
+        }
+        if ( eofReached ) {
+            return LmiFuture.completed( 0 );
+        }
+        if ( parts != null ) {
+            LmiFuture<Integer> future = new LmiFuture<>();
+            nextPartBatchAsync( future );
+            return future;
+        }
+
+        if ( pendingPage == null ) {
+            pendingPage = pageQueue.take();
+            if ( pendingPage == null ) {
+                return LmiFuture.completed( 0 );
+            }
+        }
+
+        final ResultsGetExecutor page = pendingPage;
+        final LmiFuture<Integer> future = new LmiFuture<>();
+        page.whenDone( new Runnable() {
+
+            @Override
+            public void run() {
+                if ( page.getResultsError() != null ) {
+                    future.fail( new SQLException( page.getResultsError().getErrorMessage() ) );
+                }
+                else {
+                    future.complete( page.getRowCount() );
+                }
+            }
+        } );
+        return future;
+    }
+
+    /**
+     * Complete the future with the rows of the next batch of the current part, or of the following parts if it has
+     * none left.
+     */
+    private void nextPartBatchAsync( final LmiFuture<Integer> future ) {
+        if ( partIndex >= parts.size() ) {
+            future.complete( 0 );
+            return;
+        }
+        try {
+            parts.get( partIndex ).nextBatchAsync().addCallback( new LmiCallback<Integer>() {
+
+                @Override
+                public void onSuccess( Integer rows ) {
+                    if ( rows > 0 ) {
+                        future.complete( rows );
+                    }
+                    else {
+                        partIndex++;
+                        nextPartBatchAsync( future );
+                    }
+                }
+
+                @Override
+                public void onFailure( SQLException e ) {
+                    future.fail( e );
+                }
+            } );
+        }
+        catch ( SQLException e ) {
+            future.fail( e );
+        }
+    }
+
+    private boolean switchBuffers( ResultsPage buffer ) {
+
+        if ( buffer != null && buffer.getRowCount() > 0 ) {
             currentBuffer = buffer;
             bufferIndex = 0;
-            currentRow = buffer.get( this.bufferIndex );
+            currentRow = this.bufferIndex;
             return true;
         }
         else {
@@ -223,19 +712,26 @@ public class LmiResultSet
         }
     }
 
-    private Object column( int index )
+    /**
+     * Validates the column index, and updates {@link #wasNull} for the value of this column in the current row.
+     *
+     * @return the index of the column in the current buffer
+     */
+    private int column( int index )
         throws SQLException {
         checkClosed();
         checkValidRow();
-        if ( ( index <= 0 ) || ( index > resultSetMetaData.getColumnCount() ) ) {
+        if ( ( index <= 0 ) || ( index > columnStorage.length ) ) {
             throw new SQLException( "Invalid column index: " + index );
         }
-        return currentRow.get( index - 1 );
+        int column = index - 1;
+        wasNull = currentBuffer.isNull( column, currentRow );
+        return column;
     }
 
     private void checkValidRow()
         throws SQLException {
-        if ( currentRow == null ) {
+        if ( currentRow < 0 ) {
             throw new SQLException( "Not on a valid row" );
         }
     }
@@ -266,6 +762,24 @@ public class LmiResultSet
         if ( staticContent )
             return;
 
+        if ( parts != null ) {
+            SQLException failure = null;
+            for ( LmiResultSet part : parts ) {
+                try {
+                    part.close();
+                }
+                catch ( SQLException e ) {
+                    failure = e;
+                }
+            }
+            if ( failure != null ) {
+                throw failure;
+            }
+            return;
+        }
+
+        pageQueue.close();
+
         LmiConnection conn = (LmiConnection) getStatement().getConnection();
         DeleteQueryExecutor closeCmd = new DeleteQueryExecutor( conn, metadata.getQueryId() );
         conn.getExecutor().execute( closeCmd );
@@ -312,21 +826,11 @@ public class LmiResultSet
     @Override
     public byte[] getBytes( int columnIndex )
         throws SQLException {
-        Object value = column( columnIndex );
-        if ( value == null ) {
-            wasNull = true;
+        int column = column( columnIndex );
+        if ( wasNull ) {
             return null;
         }
-        else {
-            wasNull = false;
-        }
-
-        if ( value instanceof String ) {
-            return getBytesFromString( (String) value );
-        }
-        else {
-            throw new SQLException( "Unexpected type for getBytes: " + value.getClass() );
-        }
+        return getBytesFromString( currentBuffer.getString( column, currentRow ) );
     }
 
     @Override
@@ -343,23 +847,27 @@ public class LmiResultSet
         if ( label == null ) {
             throw new SQLException( "Column label is null" );
         }
-        Integer index = fieldMap.get( label.toLowerCase() );
-        if ( index == null ) {
+        int index = columnLabels.indexOf( label );
+        if ( index == 0 ) {
             throw new SQLException( "Invalid column label: " + label );
         }
         return index;
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public <T> T unwrap( Class<T> iface )
         throws SQLException {
-        return null;
+        if ( isWrapperFor( iface ) ) {
+            return (T) this;
+        }
+        throw new SQLException( "No wrapper for " + iface );
     }
 
     @Override
     public boolean isWrapperFor( Class<?> iface )
         throws SQLException {
-        return false;
+        return iface.isInstance( this );
     }
 
     @Override
@@ -381,19 +889,16 @@ public class LmiResultSet
     public Timestamp getTimestamp( int columnIndex )
         throws SQLException {
 
-        Object value = column( columnIndex );
-
-        if ( value == null ) {
-            wasNull = true;
+        int column = column( columnIndex );
+        if ( wasNull ) {
             return new Timestamp( 0 );
         }
-        wasNull = false;
-        if ( value instanceof Long )
-            return new Timestamp( (Long) value );
-        if ( value instanceof String )
-            return new Timestamp( Long.parseLong( value.toString() ) );
-
-        throw new SQLException( "Unexpected type for timestamp : " + value.getClass() );
+        try {
+            return new Timestamp( currentBuffer.getLong( column, currentRow ) );
+        }
+        catch ( NumberFormatException nfe ) {
+            throw new SQLException( nfe );
+        }
     }
 
     @Override
@@ -427,131 +932,81 @@ public class LmiResultSet
     @Override
     public String getString( int columnIndex )
         throws SQLException {
-        Object value = column( columnIndex );
-        if ( value == null ) {
-            wasNull = true;
-            return null;
-        }
-        wasNull = false;
-        return value.toString();
+        int column = column( columnIndex );
+        return currentBuffer.getString( column, currentRow );
     }
 
     @Override
     public boolean getBoolean( int columnIndex )
         throws SQLException {
-        Object value = column( columnIndex );
-        if ( value == null ) {
-            wasNull = true;
+        int column = column( columnIndex );
+        if ( wasNull ) {
             return false;
         }
-        wasNull = false;
-        if ( value instanceof Boolean )
-            return (Boolean) value;
-        if ( value instanceof String )
-            return ( (String) value ).equalsIgnoreCase( "true" );
-        throw new SQLException( "Unexpected type for boolean: " + value.getClass() );
+        return currentBuffer.getBoolean( column, currentRow );
     }
 
     @Override
     public byte getByte( int columnIndex )
         throws SQLException {
-        Object value = column( columnIndex );
-        if ( value == null ) {
-            wasNull = true;
-            return 0;
-        }
-        wasNull = false;
-        return ( (Number) value ).byteValue();
+        return (byte) getInt( columnIndex );
     }
 
     @Override
     public short getShort( int columnIndex )
         throws SQLException {
-        Object value = column( columnIndex );
-        if ( value == null ) {
-            wasNull = true;
-            return 0;
-        }
-        wasNull = false;
-        return ( (Number) value ).shortValue();
+        return (short) getInt( columnIndex );
     }
 
     @Override
     public int getInt( int columnIndex )
         throws SQLException {
-        Object value = column( columnIndex );
-        if ( value == null ) {
-            wasNull = true;
+        int column = column( columnIndex );
+        if ( wasNull ) {
             return 0;
         }
-        wasNull = false;
-        if ( value instanceof Number )
-            return ( (Number) value ).intValue();
-        if ( value instanceof String ) {
-            try {
-                return Integer.parseInt( (String) value );
-            }
-            catch ( NumberFormatException nfe ) {
-                throw new SQLException( nfe );
-            }
+        try {
+            return currentBuffer.getInt( column, currentRow );
+        }
+        catch ( NumberFormatException nfe ) {
+            throw new SQLException( nfe );
         }
-        throw new SQLException( "Unexpected object type for an INT " + value.getClass() );
     }
 
     @Override
     public long getLong( int columnIndex )
         throws SQLException {
-        Object value = column( columnIndex );
-        if ( value == null ) {
-            wasNull = true;
+        int column = column( columnIndex );
+        if ( wasNull ) {
             return 0;
         }
-        wasNull = false;
-        if ( value instanceof Number )
-            return ( (Number) value ).longValue();
-        if ( value instanceof String ) {
-            try {
-                return Long.parseLong( (String) value );
-            }
-            catch ( NumberFormatException nfe ) {
-                throw new SQLException( nfe );
-            }
+        try {
+            return currentBuffer.getLong( column, currentRow );
+        }
+        catch ( NumberFormatException nfe ) {
+            throw new SQLException( nfe );
         }
-        throw new SQLException( "Unexpected object type for an LONG " + value.getClass() );
     }
 
     @Override
     public float getFloat( int columnIndex )
         throws SQLException {
-        Object value = column( columnIndex );
-        if ( value == null ) {
-            wasNull = true;
-            return 0;
-        }
-        wasNull = false;
-        return ( (Number) value ).floatValue();
+        return (float) getDouble( columnIndex );
     }
 
     @Override
     public double getDouble( int columnIndex )
         throws SQLException {
-        Object value = column( columnIndex );
-        if ( value == null ) {
-            wasNull = true;
+        int column = column( columnIndex );
+        if ( wasNull ) {
             return 0;
         }
-        wasNull = false;
-        if ( value instanceof Number )
-            return ( (Number) value ).doubleValue();
-        if ( value instanceof String ) {
-            try {
-                return Double.parseDouble( (String) value );
-            }
-            catch ( NumberFormatException nfe ) {
-                throw new SQLException( nfe );
-            }
+        try {
+            return currentBuffer.getDouble( column, currentRow );
+        }
+        catch ( NumberFormatException nfe ) {
+            throw new SQLException( nfe );
         }
-        throw new SQLException( "Unexpected object type for an DOUBLE " + value.getClass() );
     }
 
     @Override
@@ -652,22 +1107,10 @@ public class LmiResultSet
     @Override
     public Object getObject( int columnIndex )
         throws SQLException {
-        switch ( LmiResultSetMetaData.getSQLTypeId( metadata.getColumns().get( columnIndex ).getType() ) ) {
-            case Types.VARCHAR:
-                return getString( columnIndex );
-            case Types.TIMESTAMP:
-                return getDate( columnIndex );
-            case Types.INTEGER:
-                return getInt( columnIndex );
-            case Types.BIGINT:
-                return getBigDecimal( columnIndex );
-            case Types.DOUBLE:
-                return getDouble( columnIndex );
-            case Types.BOOLEAN:
-                return getBoolean( columnIndex );
-            default:
-                throw new SQLException( "column type not supported" );
+        if ( ( columnIndex <= 0 ) || ( columnIndex > objectGetters.length ) ) {
+            throw new SQLException( "Invalid column index: " + columnIndex );
         }
+        return objectGetters[columnIndex - 1].get( this, columnIndex );
     }
 
     @Override
@@ -1148,13 +1591,13 @@ public class LmiResultSet
     @Override
     public boolean isBeforeFirst()
         throws SQLException {
-        return currentRow == null && !eofReached;
+        return currentRow < 0 && !eofReached;
     }
 
     @Override
     public boolean isAfterLast()
         throws SQLException {
-        return currentRow == null && eofReached;
+        return currentRow < 0 && eofReached;
     }
 
     @Override
@@ -1239,6 +1682,14 @@ public class LmiResultSet
     @Override
     public void setFetchSize( int rows ) {
         this.batchSize = rows;
+        if ( pageQueue != null ) {
+            pageQueue.setFixedBatchSize( rows );
+        }
+        if ( parts != null ) {
+            for ( LmiResultSet part : parts ) {
+                part.setFetchSize( rows );
+            }
+        }
     }
 
     @Override
@@ -1607,6 +2058,71 @@ public class LmiResultSet
         throw new SQLFeatureNotSupportedException( "READ-ONLY" );
     }
 
+    /**
+     * Progress of the query on the server, in percent, as reported with the last batch or poll.
+     */
+    public int getQueryProgress() {
+        return progress;
+    }
+
+    /**
+     * Time spent by the server on the query, in milliseconds, as reported with the last batch or poll.
+     */
+    public int getQueryTimeSpent() {
+        return timeSpent;
+    }
+
+    void updateProgress( int progress, int timeSpent, int rows ) {
+        this.progress = progress;
+        this.timeSpent = timeSpent;
+        this.rowsReceived += rows;
+
+        QueryProgressListener listener = statement.getQueryProgressListener();
+        if ( listener != null ) {
+            try {
+                listener.queryProgress( metadata.getQueryId(), progress, rowsReceived, timeSpent );
+            }
+            catch ( RuntimeException e ) {
+                System.err.println( "Query progress listener failed: " + e );
+            }
+        }
+    }
+
+    /**
+     * Close without waiting for the query to be deleted on the server.
+     */
+    void cancel()
+        throws SQLException {
+
+        if ( closed ) {
+            return;
+        }
+        closed = true;
+
+        if ( staticContent )
+            return;
+
+        if ( parts != null ) {
+            for ( LmiResultSet part : parts ) {
+                part.cancel();
+            }
+            return;
+        }
+
+        pageQueue.close();
+
+        LmiConnection conn = (LmiConnection) getStatement().getConnection();
+        conn.getExecutor().execute( new DeleteQueryExecutor( conn, metadata.getQueryId() ) );
+    }
+
+    List<ColumnDesc> getColumns() {
+        return metadata.getColumns();
+    }
+
+    int[] getColumnStorage() {
+        return columnStorage;
+    }
+
     void addWarning( String reason ) {
         SQLWarning newSqlWarning = new SQLWarning( reason );
         if ( sqlWarning != null )
@@ -8,6 +8,7 @@ import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.sql.Types;
+import java.util.List;
 
 import com.tibco.loglogic.lmi.jdbc.QueryPostExecutor.ColumnDesc;
 import com.tibco.loglogic.lmi.jdbc.QueryPostExecutor.QueryMetadata;
@@ -19,8 +20,24 @@ public class LmiResultSetMetaData
 
     private final QueryMetadata metadata;
 
+    /** JDBC types of the values, as declared by the query node */
+    private final int[] valueTypes;
+
+    /** JDBC types of the columns, the values of sys_eventTime being timestamps whatever their declared type */
+    private final int[] columnTypes;
+
     LmiResultSetMetaData( QueryMetadata metadata ) {
         this.metadata = metadata;
+
+        // resolved once, rather than on each call of generic tools reading every value through getObject
+        List<ColumnDesc> columns = metadata.getColumns();
+        this.valueTypes = new int[columns.size()];
+        this.columnTypes = new int[columns.size()];
+        for ( int i = 0; i < columns.size(); i++ ) {
+            valueTypes[i] = getSQLTypeId( columns.get( i ).getType() );
+            columnTypes[i] = "sys_eventTime".equalsIgnoreCase( columns.get( i ).getName() ) ? Types.TIMESTAMP
+                            : valueTypes[i];
+        }
     }
 
     @Override
@@ -129,12 +146,7 @@ public class LmiResultSetMetaData
     @Override
     public int getColumnType( int column )
         throws SQLException {
-
-        if ( "sys_eventTime".equalsIgnoreCase( getColumnName( column ) ) ) {
-            return Types.TIMESTAMP;
-        }
-
-        return getSQLTypeId( ( getColumnDesc( column ).getType() ) );
+        return columnTypes[column - 1];
     }
 
     @Override
@@ -188,6 +200,13 @@ public class LmiResultSetMetaData
         return "OTHER";
     }
 
+    /**
+     * @return the JDBC types of the values of the columns, in the order of the columns
+     */
+    int[] getValueTypes() {
+        return valueTypes;
+    }
+
     private ColumnDesc getColumnDesc( int column ) {
         return this.metadata.getColumns().get( column - 1 );
     }
@@ -0,0 +1,31 @@
+/*
+ * Copyright (c) 2014-2018 TIBCO Software Inc. All Rights Reserved.
+ * Licensed under a BSD-type license. See TIBCO LICENSE.txt for license text.
+ */
+package com.tibco.loglogic.lmi.jdbc;
+
+/**
+ * A batch of rows as received from the server, with typed access to the values.
+ * <p>
+ * Column and row indexes start at 0, columns are in the order of the result set meta-data. The numeric accessors
+ * throw {@link NumberFormatException} when the value is not a number of their type, such as a fraction for getLong or
+ * a value beyond the range of an int for getInt, as parsing the value sent by the server would.
+ */
+public interface LmiRowBatch {
+
+    int getRowCount();
+
+    int getColumnCount();
+
+    boolean isNull( int column, int row );
+
+    String getString( int column, int row );
+
+    long getLong( int column, int row );
+
+    int getInt( int column, int row );
+
+    double getDouble( int column, int row );
+
+    boolean getBoolean( int column, int row );
+}
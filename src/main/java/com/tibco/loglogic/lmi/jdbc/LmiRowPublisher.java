@@ -0,0 +1,275 @@
+/*
+ * Copyright (c) 2014-2018 TIBCO Software Inc. All Rights Reserved.
+ * Licensed under a BSD-type license. See TIBCO LICENSE.txt for license text.
+ */
+package com.tibco.loglogic.lmi.jdbc;
+
+import java.sql.SQLException;
+
+/**
+ * Publishes the rows of a result set batch by batch, with backpressure, see {@link LmiResultSet#asPublisher()}.
+ * <p>
+ * The contract follows Reactive Streams: the subscriber receives a {@link Subscription} and requests batches with
+ * {@link Subscription#request(long)}. The next batch is requested from the server only when there is outstanding
+ * demand, so fetching slows down with the subscriber. Signals are delivered one at a time, on the connection's
+ * background threads or on the thread calling {@code request}. The result set is closed when the stream terminates
+ * or is cancelled.
+ * <p>
+ * A result set has a single stream of rows, so a publisher accepts a single subscriber.
+ */
+public class LmiRowPublisher {
+
+    /**
+     * Receives the batches of rows.
+     */
+    public interface Subscriber {
+
+        void onSubscribe( Subscription subscription );
+
+        void onNext( LmiRowBatch batch );
+
+        void onError( SQLException e );
+
+        void onComplete();
+    }
+
+    /**
+     * Demand of a subscriber.
+     */
+    public interface Subscription {
+
+        /**
+         * Request up to n more batches.
+         */
+        void request( long n );
+
+        /**
+         * Stop the stream, the query is deleted on the server.
+         */
+        void cancel();
+    }
+
+    private enum Step {
+        FETCH, EMIT, COMPLETE, ERROR, CANCEL
+    }
+
+    private final LmiResultSet resultSet;
+
+    private Subscriber subscriber;
+
+    private long demand;
+
+    private boolean cancelled;
+
+    private boolean terminated;
+
+    /** a batch is being fetched */
+    private boolean awaiting;
+
+    /** a batch was fetched and is ready to be emitted */
+    private boolean ready;
+
+    /** no more batches */
+    private boolean exhausted;
+
+    private SQLException failure;
+
+    /** a thread is running the drain loop, and whether it should loop again */
+    private boolean draining;
+
+    private boolean missed;
+
+    LmiRowPublisher( LmiResultSet resultSet ) {
+        this.resultSet = resultSet;
+    }
+
+    public void subscribe( final Subscriber subscriber ) {
+        if ( subscriber == null ) {
+            throw new NullPointerException( "subscriber" );
+        }
+        synchronized ( this ) {
+            if ( this.subscriber != null ) {
+                subscriber.onSubscribe( new Subscription() {
+
+                    @Override
+                    public void request( long n ) {
+                    }
+
+                    @Override
+                    public void cancel() {
+                    }
+                } );
+                subscriber.onError( new SQLException( "The rows of a result set can be published only once" ) );
+                return;
+            }
+            this.subscriber = subscriber;
+        }
+
+        subscriber.onSubscribe( new Subscription() {
+
+            @Override
+            public void request( long n ) {
+                synchronized ( LmiRowPublisher.this ) {
+                    if ( n <= 0 ) {
+                        failure = new SQLException( "Non-positive request: " + n );
+                    }
+                    else {
+                        demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+                    }
+                }
+                drain();
+            }
+
+            @Override
+            public void cancel() {
+                synchronized ( LmiRowPublisher.this ) {
+                    cancelled = true;
+                }
+                drain();
+            }
+        } );
+    }
+
+    /**
+     * Emits what can be emitted, and fetches the next batch if there is demand for it. Only one thread runs the loop
+     * at a time, the others just make it loop again.
+     */
+    private void drain() {
+        synchronized ( this ) {
+            if ( draining ) {
+                missed = true;
+                return;
+            }
+            draining = true;
+        }
+
+        while ( true ) {
+            Step step;
+            synchronized ( this ) {
+                if ( terminated ) {
+                    draining = false;
+                    return;
+                }
+                if ( cancelled ) {
+                    step = Step.CANCEL;
+                }
+                else if ( failure != null ) {
+                    step = Step.ERROR;
+                }
+                else if ( ready && demand > 0 ) {
+                    ready = false;
+                    demand--;
+                    step = Step.EMIT;
+                }
+                else if ( exhausted ) {
+                    step = Step.COMPLETE;
+                }
+                else if ( !ready && !awaiting && demand > 0 ) {
+                    awaiting = true;
+                    step = Step.FETCH;
+                }
+                else if ( missed ) {
+                    missed = false;
+                    continue;
+                }
+                else {
+                    draining = false;
+                    return;
+                }
+                if ( step == Step.CANCEL || step == Step.ERROR || step == Step.COMPLETE ) {
+                    terminated = true;
+                }
+            }
+
+            switch ( step ) {
+                case FETCH:
+                    fetch();
+                    break;
+                case EMIT:
+                    emit();
+                    break;
+                case COMPLETE:
+                    closeResultSet();
+                    subscriber.onComplete();
+                    break;
+                case ERROR:
+                    closeResultSet();
+                    subscriber.onError( failure );
+                    break;
+                case CANCEL:
+                    closeResultSet();
+                    break;
+            }
+        }
+    }
+
+    private void fetch() {
+        LmiFuture<Integer> nextBatch;
+        try {
+            nextBatch = resultSet.nextBatchAsync();
+        }
+        catch ( SQLException e ) {
+            synchronized ( this ) {
+                awaiting = false;
+                failure = e;
+            }
+            return;
+        }
+
+        nextBatch.addCallback( new LmiCallback<Integer>() {
+
+            @Override
+            public void onSuccess( Integer rows ) {
+                synchronized ( LmiRowPublisher.this ) {
+                    awaiting = false;
+                    if ( rows > 0 ) {
+                        ready = true;
+                    }
+                    else {
+                        exhausted = true;
+                    }
+                }
+                drain();
+            }
+
+            @Override
+            public void onFailure( SQLException e ) {
+                synchronized ( LmiRowPublisher.this ) {
+                    awaiting = false;
+                    failure = e;
+                }
+                drain();
+            }
+        } );
+    }
+
+    private void emit() {
+        ResultsPage page;
+        try {
+            // already received, does not block
+            page = resultSet.nextPage();
+        }
+        catch ( SQLException e ) {
+            synchronized ( this ) {
+                failure = e;
+            }
+            return;
+        }
+        if ( page == null ) {
+            synchronized ( this ) {
+                exhausted = true;
+            }
+            return;
+        }
+        subscriber.onNext( page );
+    }
+
+    private void closeResultSet() {
+        try {
+            resultSet.cancel();
+        }
+        catch ( SQLException e ) {
+            System.err.println( "Failed to close the published result set: " + e );
+        }
+    }
+}
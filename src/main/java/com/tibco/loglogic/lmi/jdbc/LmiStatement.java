@@ -12,6 +12,12 @@ import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
 import java.sql.SQLWarning;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.tibco.loglogic.lmi.jdbc.QueryPostExecutor.QueryMetadata;
 
 /**
  * JDBC Statement for Apollo.
@@ -25,7 +31,7 @@ public class LmiStatement
 
     private int queryTimeoutMillis;
 
-    private LmiResultSet resultSet;
+    private volatile LmiResultSet resultSet;
 
     private boolean closed;
 
@@ -33,6 +39,8 @@ public class LmiStatement
 
     private final int cursorType;
 
+    private volatile QueryProgressListener queryProgressListener;
+
     /**
      * The Constructor.
      *
@@ -80,14 +88,30 @@ public class LmiStatement
 
             LmiConnection conn = (LmiConnection) getConnection();
 
-            QueryPostExecutor command = new QueryPostExecutor( conn, sql );
-            conn.getExecutor().execute( command );
+            String cacheKey = conn.getResultCacheKey( sql );
+            ResultCache.Entry cached = cacheKey == null ? null : conn.getResultCache().get( cacheKey );
+            if ( cached != null ) {
+                resultSet = new LmiResultSet( this, cached );
+                return resultSet;
+            }
 
-            if ( command.getErrorResponse() != null ) {
-                throw new SQLException( command.getErrorResponse().getMessage() );
+            List<String> parts = conn.getSplitQueries() > 1 ? QuerySplitter.split( sql, conn.getSplitQueries() ) : null;
+            if ( parts != null ) {
+                resultSet = executeParts( conn, parts );
             }
+            else {
+                QueryPostExecutor command = new QueryPostExecutor( conn, sql );
+                conn.getExecutor().execute( command );
 
-            resultSet = new LmiResultSet( this, command.getMetadata(), batchSize, queryTimeoutMillis );
+                if ( command.getErrorResponse() != null ) {
+                    throw new SQLException( command.getErrorResponse().getMessage() );
+                }
+
+                resultSet = new LmiResultSet( this, command.getMetadata(), batchSize, queryTimeoutMillis );
+            }
+            if ( cacheKey != null ) {
+                resultSet.cacheResults( conn.getResultCache(), cacheKey );
+            }
 
             return resultSet;
         }
@@ -99,16 +123,230 @@ public class LmiStatement
         }
     }
 
+    /**
+     * Start the queries of the parts of a split query at the same time, and read them as one result set.
+     */
+    private LmiResultSet executeParts( LmiConnection conn, List<String> queries )
+        throws SQLException, InterruptedException {
+
+        List<QueryPostExecutor> commands = new ArrayList<>( queries.size() );
+        for ( String query : queries ) {
+            QueryPostExecutor command = new QueryPostExecutor( conn, query );
+            conn.getExecutor().execute( command );
+            commands.add( command );
+        }
+
+        List<LmiResultSet> parts = new ArrayList<>( commands.size() );
+        SQLException failure = null;
+        for ( QueryPostExecutor command : commands ) {
+            if ( command.getErrorResponse() != null ) {
+                failure = new SQLException( command.getErrorResponse().getMessage() );
+            }
+            else {
+                parts.add( new LmiResultSet( this, command.getMetadata(), batchSize, queryTimeoutMillis ) );
+            }
+        }
+        if ( failure != null ) {
+            for ( LmiResultSet part : parts ) {
+                part.cancel();
+            }
+            throw failure;
+        }
+        return new LmiResultSet( this, parts );
+    }
+
+    /**
+     * Start the query without blocking the caller.
+     * <p>
+     * The returned future completes with the result set once the server accepted the query, or fails with the error
+     * returned by the server. The current result set of the statement, if any, is closed without waiting. Queries are
+     * split as by {@link #executeQuery(String)}, the future then completes once the server accepted all the parts.
+     */
+    public LmiFuture<LmiResultSet> executeQueryAsync( String sql )
+        throws SQLException {
+
+        if ( this.resultSet != null ) {
+            this.resultSet.cancel();
+        }
+
+        final LmiConnection conn = (LmiConnection) getConnection();
+
+        final String cacheKey = conn.getResultCacheKey( sql );
+        ResultCache.Entry cached = cacheKey == null ? null : conn.getResultCache().get( cacheKey );
+        if ( cached != null ) {
+            resultSet = new LmiResultSet( this, cached );
+            return LmiFuture.completed( resultSet );
+        }
+
+        final LmiFuture<LmiResultSet> future = new LmiFuture<>();
+
+        List<String> parts = conn.getSplitQueries() > 1 ? QuerySplitter.split( sql, conn.getSplitQueries() ) : null;
+        if ( parts != null ) {
+            new PendingParts( conn, parts.size(), cacheKey, future ).execute( parts );
+            return future;
+        }
+
+        QueryPostExecutor command = new QueryPostExecutor( conn, sql, new LmiCallback<QueryMetadata>() {
+
+            @Override
+            public void onSuccess( QueryMetadata metadata ) {
+                try {
+                    resultSet = new LmiResultSet( LmiStatement.this, metadata, batchSize, queryTimeoutMillis );
+                    if ( cacheKey != null ) {
+                        resultSet.cacheResults( conn.getResultCache(), cacheKey );
+                    }
+                    future.complete( resultSet );
+                }
+                catch ( SQLException e ) {
+                    future.fail( e );
+                }
+            }
+
+            @Override
+            public void onFailure( SQLException e ) {
+                future.fail( e );
+            }
+        } );
+
+        try {
+            conn.getExecutor().execute( command );
+        }
+        catch ( RejectedExecutionException e ) {
+            throw new SQLException( "Error executing query", e );
+        }
+
+        return future;
+    }
+
+    /**
+     * Queries of the parts of a split query started without blocking, completing the future with the result set of
+     * all the parts once the server accepted them all.
+     */
+    private final class PendingParts {
+
+        private final LmiConnection conn;
+
+        private final String cacheKey;
+
+        private final LmiFuture<LmiResultSet> future;
+
+        /** metadata of the parts accepted by the server, in the order of the parts */
+        private final QueryMetadata[] metadata;
+
+        private SQLException failure;
+
+        private final AtomicInteger pending;
+
+        PendingParts( LmiConnection conn, int count, String cacheKey, LmiFuture<LmiResultSet> future ) {
+            this.conn = conn;
+            this.cacheKey = cacheKey;
+            this.future = future;
+            this.metadata = new QueryMetadata[count];
+            this.pending = new AtomicInteger( count );
+        }
+
+        void execute( List<String> queries ) {
+            for ( int i = 0; i < queries.size(); i++ ) {
+                final int part = i;
+                LmiCallback<QueryMetadata> callback = new LmiCallback<QueryMetadata>() {
+
+                    @Override
+                    public void onSuccess( QueryMetadata accepted ) {
+                        done( part, accepted, null );
+                    }
+
+                    @Override
+                    public void onFailure( SQLException e ) {
+                        done( part, null, e );
+                    }
+                };
+                QueryPostExecutor command = new QueryPostExecutor( conn, queries.get( i ), callback );
+                try {
+                    conn.getExecutor().execute( command );
+                }
+                catch ( RejectedExecutionException e ) {
+                    done( part, null, new SQLException( "Error executing query", e ) );
+                }
+            }
+        }
+
+        private void done( int part, QueryMetadata accepted, SQLException error ) {
+            synchronized ( this ) {
+                metadata[part] = accepted;
+                if ( error != null ) {
+                    failure = error;
+                }
+            }
+            if ( pending.decrementAndGet() == 0 ) {
+                complete();
+            }
+        }
+
+        private void complete() {
+            SQLException error;
+            synchronized ( this ) {
+                error = failure;
+            }
+            List<LmiResultSet> parts = new ArrayList<>( metadata.length );
+            for ( QueryMetadata accepted : metadata ) {
+                if ( accepted == null ) {
+                    continue;
+                }
+                try {
+                    parts.add( new LmiResultSet( LmiStatement.this, accepted, batchSize, queryTimeoutMillis ) );
+                }
+                catch ( SQLException e ) {
+                    error = e;
+                }
+            }
+
+            if ( error != null ) {
+                // the parts accepted are of no use without the others
+                for ( LmiResultSet part : parts ) {
+                    try {
+                        part.cancel();
+                    }
+                    catch ( SQLException e ) {
+                        // failing with the first error
+                    }
+                }
+                future.fail( error );
+                return;
+            }
+
+            resultSet = new LmiResultSet( LmiStatement.this, parts );
+            if ( cacheKey != null ) {
+                resultSet.cacheResults( conn.getResultCache(), cacheKey );
+            }
+            future.complete( resultSet );
+        }
+    }
+
     @Override
+    @SuppressWarnings("unchecked")
     public <T> T unwrap( Class<T> iface )
         throws SQLException {
-        return null;
+        if ( isWrapperFor( iface ) ) {
+            return (T) this;
+        }
+        throw new SQLException( "No wrapper for " + iface );
     }
 
     @Override
     public boolean isWrapperFor( Class<?> iface )
         throws SQLException {
-        return false;
+        return iface.isInstance( this );
+    }
+
+    /**
+     * Listener notified of the progress of the queries executed by this statement, null to remove it.
+     */
+    public void setQueryProgressListener( QueryProgressListener queryProgressListener ) {
+        this.queryProgressListener = queryProgressListener;
+    }
+
+    QueryProgressListener getQueryProgressListener() {
+        return queryProgressListener;
     }
 
     @Override
@@ -173,10 +411,17 @@ public class LmiStatement
         this.queryTimeoutMillis = seconds * 1000;
     }
 
+    /**
+     * Stop the current query: polling stops and the query is deleted on the server, without waiting for the
+     * deletion to complete. Can be called from another thread, or from a {@link QueryProgressListener}.
+     */
     @Override
     public void cancel()
         throws SQLException {
-        throw new SQLFeatureNotSupportedException( "Canceling statement" );
+        LmiResultSet currentResultSet = resultSet;
+        if ( currentResultSet != null ) {
+            currentResultSet.cancel();
+        }
     }
 
     @Override
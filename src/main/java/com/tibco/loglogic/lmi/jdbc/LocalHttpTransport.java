@@ -0,0 +1,361 @@
+/*
+ * Copyright (c) 2014-2018 TIBCO Software Inc. All Rights Reserved.
+ * Licensed under a BSD-type license. See TIBCO LICENSE.txt for license text.
+ */
+package com.tibco.loglogic.lmi.jdbc;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.utils.URLEncodedUtils;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.EnglishReasonPhraseCatalog;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * In-process stand-in for a query node, see {@link LmiConnection#TRANSPORT_LOCAL}.
+ * <p>
+ * Answers the requests of the driver to /api/v1/configuration and /api/v2/query without any network: each query
+ * returns the same synthetic rows, with the columns given by {@link LmiConnection#PROPERTY_LOCAL_COLUMNS}, whatever
+ * the query. Everything else in the driver runs as with a real query node, from building the requests to decoding the
+ * JSON of the results, which makes it possible to measure and profile the driver alone.
+ * <p>
+ * The latency of the network and the time the query node takes to produce each page can be simulated, see
+ * {@link LmiConnection#PROPERTY_LOCAL_LATENCY} and {@link LmiConnection#PROPERTY_LOCAL_PAGE_DELAYS}. A page that is
+ * not ready is waited for up to the long poll timeout of the request, then an empty page is returned, as the query
+ * node does. The waits hold the calling thread, as a blocking transport would.
+ */
+class LocalHttpTransport
+    extends HttpTransport {
+
+    private static final String CONFIGURATION_PATH = "/api/v1/configuration";
+
+    private static final String QUERY_PATH = "/api/v2/query";
+
+    private static final String RESULTS_SUFFIX = "/results";
+
+    /** timestamp of the first row, later rows are one second apart */
+    private static final long FIRST_EVENT_TIME = 1500000000000L;
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final long rowCount;
+
+    private final List<QueryPostExecutor.ColumnDesc> columns;
+
+    private final int[] types;
+
+    private final long latencyMillis;
+
+    private final long[] pageDelays;
+
+    private final Map<String, QueryState> queries = new ConcurrentHashMap<>();
+
+    private final AtomicLong queryIds = new AtomicLong();
+
+    /**
+     * Progress of a query.
+     */
+    private static final class QueryState {
+
+        final long createdAt = System.currentTimeMillis();
+
+        long returnedRows;
+
+        int returnedPages;
+
+        /** time at which the next page is ready */
+        long nextPageAt;
+    }
+
+    /**
+     * @param rowCount number of rows of each query
+     * @param columns comma separated list of name:TYPE
+     * @param latencyMillis time taken by each request
+     * @param pageDelays comma separated list of the times taken to produce each page, in milliseconds, the last one
+     *            applies to the following pages
+     */
+    LocalHttpTransport( long rowCount, String columns, long latencyMillis, String pageDelays )
+        throws SQLException {
+        this.rowCount = rowCount;
+        this.latencyMillis = latencyMillis;
+        String[] delays = pageDelays.split( "," );
+        this.pageDelays = new long[delays.length];
+        for ( int i = 0; i < delays.length; i++ ) {
+            this.pageDelays[i] = Long.parseLong( delays[i].trim() );
+        }
+        this.columns = new ArrayList<>();
+        for ( String column : columns.split( "," ) ) {
+            String[] parts = column.trim().split( ":" );
+            if ( parts.length != 2 ) {
+                throw new SQLException( "Invalid column, name:TYPE expected: " + column );
+            }
+            this.columns.add( new QueryPostExecutor.ColumnDesc( parts[0], parts[1] ) );
+        }
+        this.types = new int[this.columns.size()];
+        for ( int i = 0; i < types.length; i++ ) {
+            types[i] = LmiResultSetMetaData.getSQLTypeId( this.columns.get( i ).getType() );
+        }
+    }
+
+    /**
+     * There is no I/O to wait for: the exchange is run on the calling thread.
+     */
+    @Override
+    public void execute( HttpExchange exchange, HttpContext context, Executor executor ) {
+        Exception error = null;
+        try {
+            HttpUriRequest request;
+            while ( ( request = exchange.nextRequest() ) != null ) {
+                HttpResponse response = execute( request, context );
+                try {
+                    exchange.responseReceived( response );
+                }
+                finally {
+                    EntityUtils.consumeQuietly( response.getEntity() );
+                }
+            }
+        }
+        catch ( Exception e ) {
+            error = e;
+        }
+        exchange.finished( error );
+    }
+
+    @Override
+    public HttpResponse execute( HttpUriRequest request, HttpContext context )
+        throws IOException {
+
+        if ( request instanceof HttpEntityEnclosingRequest ) {
+            EntityUtils.consume( ( (HttpEntityEnclosingRequest) request ).getEntity() );
+        }
+        sleep( latencyMillis );
+
+        String method = request.getMethod();
+        String path = request.getURI().getPath();
+        if ( "GET".equals( method ) && CONFIGURATION_PATH.equals( path ) ) {
+            return getConfiguration();
+        }
+        if ( "POST".equals( method ) && QUERY_PATH.equals( path ) ) {
+            return createQuery();
+        }
+        if ( path.startsWith( QUERY_PATH + "/" ) ) {
+            String queryId = path.substring( QUERY_PATH.length() + 1 );
+            if ( "GET".equals( method ) && queryId.endsWith( RESULTS_SUFFIX ) ) {
+                return getResults( queryId.substring( 0, queryId.length() - RESULTS_SUFFIX.length() ),
+                                   getParameter( request, "size", Integer.MAX_VALUE ),
+                                   getParameter( request, "longPollTimeout", 0 ) );
+            }
+            if ( "DELETE".equals( method ) ) {
+                return deleteQuery( queryId );
+            }
+        }
+        return error( HttpStatus.SC_NOT_FOUND, "No such resource: " + method + " " + path );
+    }
+
+    private HttpResponse getConfiguration()
+        throws IOException {
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        try ( JsonGenerator generator = JSON_FACTORY.createGenerator( json, JsonEncoding.UTF8 ) ) {
+            generator.writeStartObject();
+            generator.writeObjectFieldStart( "build" );
+            generator.writeStringField( "version", "local" );
+            generator.writeEndObject();
+            generator.writeEndObject();
+        }
+        return response( HttpStatus.SC_OK, json );
+    }
+
+    private HttpResponse createQuery()
+        throws IOException {
+        String queryId = "local" + queryIds.incrementAndGet();
+        QueryState state = new QueryState();
+        state.nextPageAt = state.createdAt + pageDelay( 0 );
+        queries.put( queryId, state );
+
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        try ( JsonGenerator generator = JSON_FACTORY.createGenerator( json, JsonEncoding.UTF8 ) ) {
+            generator.writeStartObject();
+            generator.writeStringField( "queryId", queryId );
+            generator.writeArrayFieldStart( "columns" );
+            for ( QueryPostExecutor.ColumnDesc column : columns ) {
+                generator.writeStartObject();
+                generator.writeStringField( "name", column.getName() );
+                generator.writeStringField( "type", column.getType() );
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+        return response( HttpStatus.SC_OK, json );
+    }
+
+    private HttpResponse getResults( String queryId, int batchSize, long longPollMillis )
+        throws IOException {
+        QueryState state = queries.get( queryId );
+        if ( state == null ) {
+            return error( HttpStatus.SC_NOT_FOUND, "No such query: " + queryId );
+        }
+
+        long wait;
+        synchronized ( state ) {
+            wait = state.nextPageAt - System.currentTimeMillis();
+        }
+        sleep( Math.min( wait, longPollMillis ) );
+
+        // reserve the next rows if they are ready, requests for the same query may be concurrent
+        long offset;
+        long count = 0;
+        long timeSpent;
+        synchronized ( state ) {
+            long now = System.currentTimeMillis();
+            offset = state.returnedRows;
+            if ( now >= state.nextPageAt ) {
+                count = Math.max( 0, Math.min( batchSize, rowCount - offset ) );
+                state.returnedRows += count;
+                state.returnedPages++;
+                state.nextPageAt = now + pageDelay( state.returnedPages );
+            }
+            timeSpent = now - state.createdAt;
+        }
+        boolean hasMore = offset + count < rowCount;
+
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        try ( JsonGenerator generator = JSON_FACTORY.createGenerator( json, JsonEncoding.UTF8 ) ) {
+            generator.writeStartObject();
+            generator.writeNumberField( "offset", offset );
+            generator.writeArrayFieldStart( "rows" );
+            for ( long row = offset; row < offset + count; row++ ) {
+                generator.writeStartArray();
+                for ( int column = 0; column < types.length; column++ ) {
+                    writeValue( generator, column, row );
+                }
+                generator.writeEndArray();
+            }
+            generator.writeEndArray();
+            generator.writeNumberField( "progress", hasMore ? (int) ( 100 * ( offset + count ) / rowCount ) : 100 );
+            generator.writeNumberField( "timeSpent", timeSpent );
+            generator.writeBooleanField( "hasMore", hasMore );
+            generator.writeEndObject();
+        }
+        return response( HttpStatus.SC_OK, json );
+    }
+
+    /**
+     * Value of a column for a row, different for each row.
+     */
+    private void writeValue( JsonGenerator generator, int column, long row )
+        throws IOException {
+        switch ( types[column] ) {
+            case Types.TIMESTAMP:
+                generator.writeNumber( FIRST_EVENT_TIME + row * 1000 );
+                break;
+            case Types.INTEGER:
+                generator.writeNumber( (int) row );
+                break;
+            case Types.BIGINT:
+                generator.writeNumber( row * 1000 );
+                break;
+            case Types.DOUBLE:
+                generator.writeNumber( row / 4.0 );
+                break;
+            case Types.BOOLEAN:
+                generator.writeBoolean( row % 2 == 0 );
+                break;
+            default:
+                if ( "INET_ADDR".equalsIgnoreCase( columns.get( column ).getType() ) ) {
+                    generator.writeString( "10." + ( ( row >> 16 ) & 0xff ) + "." + ( ( row >> 8 ) & 0xff ) + "."
+                        + ( row & 0xff ) );
+                }
+                else {
+                    generator.writeString( columns.get( column ).getName() + " of row " + row );
+                }
+        }
+    }
+
+    private HttpResponse deleteQuery( String queryId )
+        throws IOException {
+        if ( queries.remove( queryId ) == null ) {
+            return error( HttpStatus.SC_NOT_FOUND, "No such query: " + queryId );
+        }
+        return new BasicHttpResponse( HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK" );
+    }
+
+    private long pageDelay( int page ) {
+        return pageDelays[Math.min( page, pageDelays.length - 1 )];
+    }
+
+    private static int getParameter( HttpUriRequest request, String name, int defaultValue ) {
+        String query = request.getURI().getRawQuery();
+        if ( query == null ) {
+            return defaultValue;
+        }
+        for ( NameValuePair parameter : URLEncodedUtils.parse( query, StandardCharsets.UTF_8 ) ) {
+            if ( name.equals( parameter.getName() ) ) {
+                return Integer.parseInt( parameter.getValue() );
+            }
+        }
+        return defaultValue;
+    }
+
+    private static void sleep( long millis )
+        throws InterruptedIOException {
+        if ( millis <= 0 ) {
+            return;
+        }
+        try {
+            Thread.sleep( millis );
+        }
+        catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException( "Interrupted while simulating the query node" );
+        }
+    }
+
+    private static HttpResponse response( int status, ByteArrayOutputStream json ) {
+        BasicHttpResponse response = new BasicHttpResponse( HttpVersion.HTTP_1_1, status, EnglishReasonPhraseCatalog.INSTANCE
+            .getReason( status, Locale.ENGLISH ) );
+        response.setEntity( new ByteArrayEntity( json.toByteArray(), ContentType.APPLICATION_JSON ) );
+        return response;
+    }
+
+    private static HttpResponse error( int status, String message )
+        throws IOException {
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        try ( JsonGenerator generator = JSON_FACTORY.createGenerator( json, JsonEncoding.UTF8 ) ) {
+            generator.writeStartObject();
+            generator.writeStringField( "message", message );
+            generator.writeEndObject();
+        }
+        return response( status, json );
+    }
+
+    @Override
+    public void close() {
+        queries.clear();
+    }
+}
@@ -0,0 +1,409 @@
+/*
+ * Copyright (c) 2014-2018 TIBCO Software Inc. All Rights Reserved.
+ * Licensed under a BSD-type license. See TIBCO LICENSE.txt for license text.
+ */
+package com.tibco.loglogic.lmi.jdbc;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.tibco.loglogic.lmi.jdbc.QueryPostExecutor.ColumnDesc;
+
+/**
+ * Catalogs of the models and of their columns, shared by the connections of the driver.
+ * <p>
+ * Tools browsing the schema ask for the tables and the columns over and over, with a different pattern each time.
+ * Each catalog query is run once without condition, and its rows are kept for a while: the patterns are then matched
+ * on the kept rows, without going to the query node, case included as identifiers are case sensitive. The rows are
+ * kept for each user, as they depend on its permissions.
+ * <p>
+ * The catalogs can also be kept on disk, see {@link LmiConnection#PROPERTY_METADATA_SNAPSHOT_DIR}, for each query
+ * node, build of the query node and user: a new process then starts with the catalogs of the previous one, while they
+ * are fetched again in the background.
+ */
+final class MetadataCache {
+
+    /**
+     * Rows of a catalog query, replaced as a whole so that readers never see the columns of one fetch with the rows of
+     * another.
+     */
+    private static final class Catalog {
+
+        final List<ColumnDesc> columns;
+
+        final ResultsPage rows;
+
+        /** time after which the rows are fetched again */
+        final long expiresAt;
+
+        Catalog( List<ColumnDesc> columns, ResultsPage rows, long expiresAt ) {
+            this.columns = columns;
+            this.rows = rows;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * Current rows of a catalog query, and lock of their fetch.
+     */
+    private static final class Entry {
+
+        /** null until fetched */
+        volatile Catalog catalog;
+    }
+
+    /**
+     * Catalogs of a query node for a user, as kept on disk.
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    static class Snapshot {
+
+        @JsonProperty
+        String buildVersion;
+
+        @JsonProperty
+        List<SnapshotCatalog> catalogs = new ArrayList<>();
+    }
+
+    /**
+     * Rows of a catalog query, as kept on disk.
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    static class SnapshotCatalog {
+
+        @JsonProperty
+        String query;
+
+        @JsonProperty
+        List<ColumnDesc> columns;
+
+        @JsonProperty
+        List<String[]> rows;
+    }
+
+    private final ConcurrentMap<String, Entry> catalogs = new ConcurrentHashMap<>();
+
+    /**
+     * Rows of the catalog query whose values match the patterns, in the order of the catalog.
+     *
+     * @param query catalog query, without condition
+     * @param columnNames names of the columns to match, in upper case
+     * @param patterns for each column, the pattern to match, null to match any value
+     * @param like true for the patterns of LIKE, false for exact values
+     */
+    LmiResultSet query( LmiConnection connection, String query, String[] columnNames, String[] patterns,
+                        boolean like )
+        throws SQLException {
+
+        Catalog catalog = get( connection, query );
+
+        int[] columns = new int[columnNames.length];
+        Pattern[] matchers = new Pattern[columnNames.length];
+        for ( int i = 0; i < columnNames.length; i++ ) {
+            columns[i] = indexOf( catalog.columns, columnNames[i] );
+            if ( patterns[i] != null ) {
+                matchers[i] = like ? likePattern( patterns[i] ) : Pattern.compile( Pattern.quote( patterns[i] ) );
+            }
+        }
+
+        int[] selected = new int[catalog.rows.getRowCount()];
+        int count = 0;
+        for ( int row = 0; row < selected.length; row++ ) {
+            if ( matches( catalog.rows, row, columns, matchers ) ) {
+                selected[count++] = row;
+            }
+        }
+        return new LmiResultSet( catalog.columns, catalog.rows.select( selected, count ) );
+    }
+
+    /**
+     * Forget the catalogs of the user of the connection, they are fetched again when next needed.
+     */
+    void refresh( LmiConnection connection ) {
+        String prefix = keyPrefix( connection );
+        for ( String key : catalogs.keySet() ) {
+            if ( key.startsWith( prefix ) ) {
+                catalogs.remove( key );
+            }
+        }
+    }
+
+    /**
+     * Load the catalogs kept on disk for the connection, unless they are in memory already, and fetch them again in
+     * the background.
+     */
+    void loadSnapshot( final LmiConnection connection ) {
+        File file = snapshotFile( connection );
+        if ( !file.isFile() ) {
+            return;
+        }
+        final Map<String, Entry> loaded = new LinkedHashMap<>();
+        try {
+            Snapshot snapshot = connection.getObjectMapper().readValue( file, Snapshot.class );
+            if ( !isValid( snapshot ) ) {
+                throw new IOException( "incomplete snapshot" );
+            }
+            long expiresAt = System.currentTimeMillis() + connection.getMetadataCacheTtl();
+            for ( SnapshotCatalog saved : snapshot.catalogs ) {
+                Entry entry = new Entry();
+                entry.catalog = new Catalog( saved.columns, ResultsPage
+                    .fromRows( ResultsPage.storageOf( saved.columns ), saved.rows.toArray( new String[0][] ) ),
+                                             expiresAt );
+                loaded.put( saved.query, entry );
+            }
+        }
+        catch ( IOException | RuntimeException e ) {
+            // the catalogs are fetched from the query node when needed, as without snapshot
+            System.err.println( "Ignoring the meta-data snapshot " + file + ": " + e );
+            return;
+        }
+
+        final String prefix = keyPrefix( connection );
+        for ( Iterator<Map.Entry<String, Entry>> entries = loaded.entrySet().iterator(); entries.hasNext(); ) {
+            Map.Entry<String, Entry> entry = entries.next();
+            if ( catalogs.putIfAbsent( prefix + entry.getKey(), entry.getValue() ) != null ) {
+                // fetched already
+                entries.remove();
+            }
+        }
+        if ( loaded.isEmpty() ) {
+            return;
+        }
+
+        // on a thread of its own: the queries block their thread until their pages are received from the executor of
+        // the connection, which would be starved if they took its threads
+        Thread revalidation = new Thread( new Runnable() {
+
+            @Override
+            public void run() {
+                for ( Map.Entry<String, Entry> entry : loaded.entrySet() ) {
+                    try {
+                        fetch( connection, entry.getKey(), entry.getValue() );
+                    }
+                    catch ( SQLException e ) {
+                        System.err.println( "Failed to revalidate the catalog " + entry.getKey() + ": " + e );
+                        return;
+                    }
+                }
+            }
+        }, "lmi-jdbc-metadata-revalidation" );
+        revalidation.setDaemon( true );
+        revalidation.start();
+    }
+
+    private static boolean isValid( Snapshot snapshot ) {
+        if ( snapshot == null || snapshot.catalogs == null ) {
+            return false;
+        }
+        for ( SnapshotCatalog saved : snapshot.catalogs ) {
+            if ( saved == null || saved.query == null || saved.columns == null || saved.rows == null ) {
+                return false;
+            }
+            for ( ColumnDesc column : saved.columns ) {
+                if ( column == null || column.getName() == null ) {
+                    return false;
+                }
+            }
+            for ( String[] row : saved.rows ) {
+                if ( row == null || row.length != saved.columns.size() ) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private Catalog get( LmiConnection connection, String query )
+        throws SQLException {
+
+        String key = keyPrefix( connection ) + query;
+        Entry entry = catalogs.get( key );
+        if ( entry == null ) {
+            Entry created = new Entry();
+            entry = catalogs.putIfAbsent( key, created );
+            if ( entry == null ) {
+                entry = created;
+            }
+        }
+
+        // one fetch at a time for each catalog, the other callers wait for its rows
+        synchronized ( entry ) {
+            Catalog catalog = entry.catalog;
+            if ( catalog == null || System.currentTimeMillis() >= catalog.expiresAt ) {
+                catalog = fetch( connection, query, entry );
+            }
+            return catalog;
+        }
+    }
+
+    /**
+     * Fetch the rows of the catalog, and save the catalogs of the connection on disk if they are kept there.
+     */
+    private Catalog fetch( LmiConnection connection, String query, Entry entry )
+        throws SQLException {
+
+        List<ColumnDesc> columns;
+        ResultsPage rows;
+        try ( Statement statement = connection.createStatement();
+              LmiResultSet resultSet = (LmiResultSet) statement.executeQuery( query ) ) {
+            List<ResultsPage> pages = new ArrayList<>();
+            for ( ResultsPage page = resultSet.nextPage(); page != null; page = resultSet.nextPage() ) {
+                pages.add( page );
+            }
+            columns = resultSet.getColumns();
+            rows = ResultsPage.concat( ResultsPage.storageOf( columns ), pages );
+        }
+        Catalog catalog = new Catalog( columns, rows, System.currentTimeMillis() + connection.getMetadataCacheTtl() );
+        entry.catalog = catalog;
+
+        if ( connection.getMetadataSnapshotDir() != null ) {
+            saveSnapshot( connection );
+        }
+        return catalog;
+    }
+
+    /**
+     * Write the catalogs of the connection in memory to its snapshot, replacing the previous one at once.
+     */
+    private void saveSnapshot( LmiConnection connection ) {
+        String prefix = keyPrefix( connection );
+        Snapshot snapshot = new Snapshot();
+        snapshot.buildVersion = connection.getBuildVersion();
+        for ( Map.Entry<String, Entry> entry : catalogs.entrySet() ) {
+            Catalog catalog = entry.getValue().catalog;
+            if ( !entry.getKey().startsWith( prefix ) || catalog == null ) {
+                continue;
+            }
+            SnapshotCatalog saved = new SnapshotCatalog();
+            saved.query = entry.getKey().substring( prefix.length() );
+            saved.columns = catalog.columns;
+            saved.rows = new ArrayList<>( catalog.rows.getRowCount() );
+            for ( int row = 0; row < catalog.rows.getRowCount(); row++ ) {
+                String[] values = new String[catalog.rows.getColumnCount()];
+                for ( int column = 0; column < values.length; column++ ) {
+                    values[column] = catalog.rows.getString( column, row );
+                }
+                saved.rows.add( values );
+            }
+            snapshot.catalogs.add( saved );
+        }
+
+        File file = snapshotFile( connection );
+        File temporary = null;
+        try {
+            File directory = file.getParentFile();
+            if ( !directory.isDirectory() && !directory.mkdirs() ) {
+                throw new IOException( "Cannot create the directory " + directory );
+            }
+            temporary = File.createTempFile( "lmi-metadata-", ".tmp", directory );
+            connection.getObjectMapper().writeValue( temporary, snapshot );
+            try {
+                Files.move( temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                            StandardCopyOption.ATOMIC_MOVE );
+            }
+            catch ( AtomicMoveNotSupportedException e ) {
+                Files.move( temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING );
+            }
+        }
+        catch ( IOException e ) {
+            System.err.println( "Failed to save the meta-data snapshot " + file + ": " + e );
+            if ( temporary != null && !temporary.delete() ) {
+                temporary.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * File of the catalogs of the query node, at its current build, for the user of the connection. The name is a
+     * hash, so that it is a valid file name and does not show the user.
+     */
+    private static File snapshotFile( LmiConnection connection ) {
+        String key = keyPrefix( connection ) + connection.getBuildVersion();
+        StringBuilder name = new StringBuilder( "lmi-metadata-" );
+        try {
+            byte[] digest = MessageDigest.getInstance( "SHA-256" ).digest( key.getBytes( StandardCharsets.UTF_8 ) );
+            for ( int i = 0; i < 16; i++ ) {
+                name.append( String.format( "%02x", digest[i] ) );
+            }
+        }
+        catch ( NoSuchAlgorithmException e ) {
+            // every Java platform has SHA-256
+            throw new IllegalStateException( e );
+        }
+        return new File( connection.getMetadataSnapshotDir(), name.append( ".json" ).toString() );
+    }
+
+    private static String keyPrefix( LmiConnection connection ) {
+        return connection.getUrl() + '\n' + connection.getUsername() + '\n';
+    }
+
+    private static int indexOf( List<ColumnDesc> columns, String name )
+        throws SQLException {
+        for ( int i = 0; i < columns.size(); i++ ) {
+            if ( name.equalsIgnoreCase( columns.get( i ).getName() ) ) {
+                return i;
+            }
+        }
+        throw new SQLException( "No column " + name + " in the catalog" );
+    }
+
+    private static boolean matches( ResultsPage rows, int row, int[] columns, Pattern[] matchers ) {
+        for ( int i = 0; i < columns.length; i++ ) {
+            if ( matchers[i] == null ) {
+                continue;
+            }
+            String value = rows.getString( columns[i], row );
+            if ( value == null || !matchers[i].matcher( value ).matches() ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Regular expression of a LIKE pattern: % for any characters, _ for any character, and \ to escape them, see
+     * {@link LmiDatabaseMetaData#getSearchStringEscape()}. Case is matched, as by the query node.
+     */
+    static Pattern likePattern( String like ) {
+        StringBuilder regex = new StringBuilder( like.length() + 8 );
+        StringBuilder literal = new StringBuilder();
+        for ( int i = 0; i < like.length(); i++ ) {
+            char ch = like.charAt( i );
+            if ( ch == '\\' && i + 1 < like.length() ) {
+                literal.append( like.charAt( ++i ) );
+                continue;
+            }
+            if ( ch != '%' && ch != '_' ) {
+                literal.append( ch );
+                continue;
+            }
+            if ( literal.length() > 0 ) {
+                regex.append( Pattern.quote( literal.toString() ) );
+                literal.setLength( 0 );
+            }
+            regex.append( ch == '%' ? ".*" : "." );
+        }
+        if ( literal.length() > 0 ) {
+            regex.append( Pattern.quote( literal.toString() ) );
+        }
+        return Pattern.compile( regex.toString(), Pattern.DOTALL );
+    }
+}
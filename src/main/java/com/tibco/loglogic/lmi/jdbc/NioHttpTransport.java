@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2014-2018 TIBCO Software Inc. All Rights Reserved.
+ * Licensed under a BSD-type license. See TIBCO LICENSE.txt for license text.
+ */
+package com.tibco.loglogic.lmi.jdbc;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.SSLContext;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
+
+/**
+ * Transport sending the requests on the I/O threads of an asynchronous client, without holding any other thread while
+ * a request is in flight. A pending long poll costs a socket, not a thread.
+ * <p>
+ * Responses are received in memory by the I/O threads, then handed to the executor of the exchange to be decoded, so
+ * that decoding a large page does not hold up the I/O of the other requests.
+ */
+class NioHttpTransport
+    extends HttpTransport {
+
+    private final CloseableHttpAsyncClient client;
+
+    /**
+     * @param client started client
+     */
+    NioHttpTransport( CloseableHttpAsyncClient client ) {
+        this.client = client;
+    }
+
+    /**
+     * Transport with a new client, started. The asynchronous client is only loaded when this transport is used.
+     *
+     * @param maxConnections maximum number of connections to the query node
+     * @param ioThreads number of I/O threads
+     * @param timeoutMillis connect and socket timeout
+     */
+    static NioHttpTransport create( SSLContext sslContext, HostnameVerifier hostnameVerifier, int maxConnections,
+                                    int ioThreads, int timeoutMillis ) {
+        IOReactorConfig ioReactorConfig = IOReactorConfig.custom().setIoThreadCount( ioThreads )
+            .setConnectTimeout( timeoutMillis ).setSoTimeout( timeoutMillis ).build();
+        CloseableHttpAsyncClient client = HttpAsyncClients.custom()
+            .setSSLStrategy( new SSLIOSessionStrategy( sslContext, hostnameVerifier ) )
+            .setMaxConnPerRoute( maxConnections ).setMaxConnTotal( maxConnections )
+            .setDefaultIOReactorConfig( ioReactorConfig )
+            .setThreadFactory( new StatementExecutor.DaemonThreadFactory( "lmi-jdbc-io-" ) ).build();
+        client.start();
+        return new NioHttpTransport( client );
+    }
+
+    @Override
+    public void execute( final HttpExchange exchange, final HttpContext context, final Executor executor ) {
+        HttpUriRequest request;
+        try {
+            request = exchange.nextRequest();
+        }
+        catch ( Exception e ) {
+            exchange.finished( e );
+            return;
+        }
+        if ( request == null ) {
+            exchange.finished( null );
+            return;
+        }
+
+        try {
+            client.execute( request, context, new FutureCallback<HttpResponse>() {
+
+                @Override
+                public void completed( final HttpResponse response ) {
+                    dispatch( executor, new Runnable() {
+
+                        @Override
+                        public void run() {
+                            try {
+                                exchange.responseReceived( response );
+                            }
+                            catch ( Exception e ) {
+                                exchange.finished( e );
+                                return;
+                            }
+                            finally {
+                                EntityUtils.consumeQuietly( response.getEntity() );
+                            }
+                            // next request of the exchange, if any
+                            execute( exchange, context, executor );
+                        }
+                    } );
+                }
+
+                @Override
+                public void failed( final Exception e ) {
+                    dispatch( executor, new Runnable() {
+
+                        @Override
+                        public void run() {
+                            exchange.finished( e );
+                        }
+                    } );
+                }
+
+                @Override
+                public void cancelled() {
+                    dispatch( executor, new Runnable() {
+
+                        @Override
+                        public void run() {
+                            exchange.finished( new IOException( "Request was cancelled" ) );
+                        }
+                    } );
+                }
+            } );
+        }
+        catch ( RuntimeException e ) {
+            // the client is shut down
+            exchange.finished( e );
+        }
+    }
+
+    /**
+     * Leave the I/O thread, unless the JDBC connection is closing and its executor is gone.
+     */
+    private static void dispatch( Executor executor, Runnable task ) {
+        try {
+            executor.execute( task );
+        }
+        catch ( RejectedExecutionException e ) {
+            task.run();
+        }
+    }
+
+    @Override
+    public HttpResponse execute( HttpUriRequest request, HttpContext context )
+        throws IOException {
+        try {
+            return client.execute( request, context, null ).get();
+        }
+        catch ( InterruptedException e ) {
+            throw new InterruptedIOException( "Interrupted while waiting for " + request.getURI() );
+        }
+        catch ( ExecutionException e ) {
+            if ( e.getCause() instanceof IOException ) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException( e.getCause() );
+        }
+    }
+
+    @Override
+    public void close()
+        throws IOException {
+        client.close();
+    }
+}
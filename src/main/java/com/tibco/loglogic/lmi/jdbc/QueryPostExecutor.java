@@ -4,12 +4,14 @@
  */
 package com.tibco.loglogic.lmi.jdbc;
 
+import java.sql.SQLException;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
 
+import org.apache.http.HttpResponse;
 import org.apache.http.client.config.RequestConfig;
-import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.util.EntityUtils;
 
@@ -22,7 +24,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
  * Task for starting the query on the query node. It should be executed on the connection's executor.
  */
 class QueryPostExecutor
-    implements Runnable {
+    implements Runnable, HttpExchange {
 
     private final CountDownLatch latch;
 
@@ -34,6 +36,11 @@ class QueryPostExecutor
 
     private final LmiConnection connection;
 
+    /** notified once the response is received, may be null */
+    private final LmiCallback<QueryMetadata> callback;
+
+    private boolean sent;
+
     /**
      * Request to create query send to query node.
      * <p>
@@ -169,17 +176,45 @@ class QueryPostExecutor
      * @param query string
      */
     QueryPostExecutor( LmiConnection connection, String query ) {
+        this( connection, query, null );
+    }
+
+    /**
+     * The Constructor.
+     *
+     * @param connection to the server
+     * @param query string
+     * @param callback notified with the meta-data or the error once the response is received
+     */
+    QueryPostExecutor( LmiConnection connection, String query, LmiCallback<QueryMetadata> callback ) {
         this.connection = connection;
         this.latch = new CountDownLatch( 1 );
         this.query = query;
+        this.callback = callback;
+    }
+
+    @Override
+    public void run() {
+        try {
+            connection.getHttpSession().execute( this );
+        }
+        catch ( SQLException e ) {
+            finished( e );
+        }
     }
 
     /**
-     * Gets json data for the query, which include query ID and the column meta-data.
+     * Request for json data for the query, which include query ID and the column meta-data.
      */
-    private CloseableHttpResponse invokePostRequest()
+    @Override
+    public HttpUriRequest nextRequest()
         throws Exception {
 
+        if ( sent ) {
+            return null;
+        }
+        sent = true;
+
         HttpPost postRequest = new HttpPost( connection.getUrl() );
         RequestConfig requestConfig = RequestConfig.custom().setSocketTimeout( connection.getNetworkTimeout() )
             .setConnectTimeout( connection.getNetworkTimeout() ).build();
@@ -197,55 +232,69 @@ class QueryPostExecutor
         postRequest.setEntity( entity );
         System.out.print( "Getting response..." );
         System.out.flush();
-        return connection.getHttpClient().execute( postRequest );
+        return postRequest;
     }
 
     @Override
-    public void run() {
+    public void responseReceived( HttpResponse response )
+        throws Exception {
         ObjectMapper mapper = connection.getObjectMapper();
 
-        try (CloseableHttpResponse response = invokePostRequest()) {
-            // get the data from server
-
-            final String json = EntityUtils.toString( response.getEntity() );
+        // get the data from server
+        final String json = EntityUtils.toString( response.getEntity() );
 
-            if ( response.getStatusLine().getStatusCode() == 200 ) {
-                // If the response is formatted to QueryMetadata instance
-                QueryMetadata queryMetadata = mapper.readValue( json, QueryMetadata.class );
-                if ( queryMetadata.getColumns() != null ) {
-                    metadata = queryMetadata;
-                }
-                System.out
-                    .println( "OK: id=" + queryMetadata.getQueryId() + ", columns=" + queryMetadata.columns.size() );
+        if ( response.getStatusLine().getStatusCode() == 200 ) {
+            // If the response is formatted to QueryMetadata instance
+            QueryMetadata queryMetadata = mapper.readValue( json, QueryMetadata.class );
+            if ( queryMetadata.getColumns() != null ) {
+                metadata = queryMetadata;
             }
-            else if ( response.getStatusLine().getStatusCode() == 400 ) {
-                System.out.println( "BAD:400" );
-                // If the response is formatted to PostErrorResponse instance
-                // Which generally indicates error in query
-                try {
-                    errorResponse = mapper.readValue( json, PostErrorResponse.class );
-                }
-                catch ( Exception exception ) {
-                    // not even proper error
-                    errorResponse = new PostErrorResponse();
-                    errorResponse.setMessage( json );
-                }
+            System.out
+                .println( "OK: id=" + queryMetadata.getQueryId() + ", columns=" + queryMetadata.columns.size() );
+        }
+        else if ( response.getStatusLine().getStatusCode() == 400 ) {
+            System.out.println( "BAD:400" );
+            // If the response is formatted to PostErrorResponse instance
+            // Which generally indicates error in query
+            try {
+                errorResponse = mapper.readValue( json, PostErrorResponse.class );
             }
-            else {
-                System.out.println( "BAD:" + response.getStatusLine().getStatusCode() + ":"
-                    + response.getStatusLine().getReasonPhrase() );
+            catch ( Exception exception ) {
+                // not even proper error
                 errorResponse = new PostErrorResponse();
-                errorResponse.setMessage( "Could not connect to QueryNode: " + connection.getUrl() + ": "
-                    + response.getStatusLine().toString() );
+                errorResponse.setMessage( json );
             }
         }
-        catch ( Exception e ) {
+        else {
+            System.out.println( "BAD:" + response.getStatusLine().getStatusCode() + ":"
+                + response.getStatusLine().getReasonPhrase() );
+            errorResponse = new PostErrorResponse();
+            errorResponse.setMessage( "Could not connect to QueryNode: " + connection.getUrl() + ": "
+                + response.getStatusLine().toString() );
+        }
+    }
+
+    @Override
+    public void finished( Exception error ) {
+        if ( error != null ) {
             errorResponse = new PostErrorResponse();
-            errorResponse.setMessage( e.getMessage() );
+            errorResponse.setMessage( error.getMessage() );
+        }
+        // notify others we have done
+        latch.countDown();
+        notifyCallback();
+    }
+
+    private void notifyCallback() {
+        if ( callback == null ) {
+            return;
+        }
+        if ( metadata != null ) {
+            callback.onSuccess( metadata );
         }
-        finally {
-            // notify others we have done
-            latch.countDown();
+        else {
+            callback.onFailure( new SQLException( errorResponse != null ? errorResponse.getMessage()
+                            : "No columns in the query response" ) );
         }
     }
 
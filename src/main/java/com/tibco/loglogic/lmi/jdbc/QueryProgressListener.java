@@ -0,0 +1,24 @@
+/*
+ * Copyright (c) 2014-2018 TIBCO Software Inc. All Rights Reserved.
+ * Licensed under a BSD-type license. See TIBCO LICENSE.txt for license text.
+ */
+package com.tibco.loglogic.lmi.jdbc;
+
+/**
+ * Receives the progress of the queries executed by a statement, as reported by the server with every batch of
+ * results and while polling for them.
+ * <p>
+ * Register it with {@code statement.unwrap( LmiStatement.class ).setQueryProgressListener( listener )}. The events are
+ * delivered on the connection's background threads and the listener should return quickly. A query that is not
+ * worth waiting for can be stopped with {@link java.sql.Statement#cancel()}, which deletes it on the server.
+ */
+public interface QueryProgressListener {
+
+    /**
+     * @param queryId ID of the query on the server
+     * @param progress progress of the query, in percent
+     * @param rowsSoFar number of rows received so far by the result set
+     * @param timeSpentMillis time spent by the server on the query, in milliseconds
+     */
+    void queryProgress( String queryId, int progress, long rowsSoFar, int timeSpentMillis );
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2014-2018 TIBCO Software Inc. All Rights Reserved.
+ * Licensed under a BSD-type license. See TIBCO LICENSE.txt for license text.
+ */
+package com.tibco.loglogic.lmi.jdbc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Splitting of the sys_eventTime range of a query into consecutive sub-ranges, each run as a query of its own so that
+ * the query node works on them in parallel.
+ * <p>
+ * Each part is the original query with a narrower range added to its conditions, so that the parts together return
+ * exactly the rows of the original query, whatever the time zone the query node reads the dates of the query in. As
+ * the sub-ranges do not overlap, the rows ordered by sys_eventTime are the rows of the parts one after the other.
+ * <p>
+ * Only the queries returning events as they are can be split: no aggregation, DISTINCT, LIMIT or EQL pipe, nothing
+ * that could widen the range (OR, NOT, UNION), and no ORDER BY other than on sys_eventTime.
+ */
+final class QuerySplitter {
+
+    /** sub-ranges shorter than this are not worth a query of their own */
+    private static final long MIN_PART_MILLIS = 60 * 1000L;
+
+    private static final String TIME = "((?:\\w+\\.)?sys_eventTime)";
+
+    private static final String VALUE = "('[^']*'|\"[^\"]*\"|\\d+)";
+
+    private static final Pattern LOWER_BOUND = Pattern.compile( "(?i)" + TIME + "\\s*>=?\\s*" + VALUE );
+
+    private static final Pattern UPPER_BOUND = Pattern.compile( "(?i)" + TIME + "\\s*<=?\\s*" + VALUE );
+
+    private static final Pattern RANGE = Pattern
+        .compile( "(?i)" + TIME + "\\s+(?:BETWEEN\\s+" + VALUE + "\\s+AND|IN\\s+" + VALUE + "\\s*:)\\s*" + VALUE );
+
+    private static final Pattern NOT_SPLITTABLE = Pattern
+        .compile( "(?i)\\b(?:GROUP|HAVING|DISTINCT|LIMIT|TOP|OFFSET|JOIN|COUNT|SUM|AVG|MIN|MAX)\\b|\\|" );
+
+    private static final Pattern ORDER_BY = Pattern.compile( "(?i)\\bORDER\\s+BY\\b" );
+
+    private static final Pattern ORDER_BY_TIME = Pattern
+        .compile( "(?i)\\bORDER\\s+BY\\s+(?:\\w+\\.)?sys_eventTime(?:\\s+(ASC|DESC))?$" );
+
+    private QuerySplitter() {
+    }
+
+    /**
+     * Split the query into at most the number of parts, null if it cannot be split.
+     *
+     * @return the queries of the sub-ranges, in the order of their rows
+     */
+    static List<String> split( String sql, int parts ) {
+        String normalized = ResultCache.normalize( sql );
+        String conditions = ResultCache.LITERAL.matcher( normalized ).replaceAll( "''" );
+        if ( ResultCache.OPEN_RANGE.matcher( conditions ).find() || NOT_SPLITTABLE.matcher( conditions ).find() ) {
+            return null;
+        }
+        boolean descending = false;
+        if ( ORDER_BY.matcher( conditions ).find() ) {
+            Matcher orderBy = ORDER_BY_TIME.matcher( conditions );
+            if ( !orderBy.find() ) {
+                return null;
+            }
+            descending = "DESC".equalsIgnoreCase( orderBy.group( 1 ) );
+        }
+
+        // narrowest range of the conditions, in the time zone of the driver, which may not be the one of the node
+        TimeZone timeZone = TimeZone.getDefault();
+        long start = Long.MIN_VALUE;
+        long end = Long.MAX_VALUE;
+        String column = null;
+        int insertAt = -1;
+        // conditions only, not the text of the literals, the parts being inserted after the last one
+        int[] literals = ResultCache.literalSpans( normalized );
+        Matcher matcher = LOWER_BOUND.matcher( normalized );
+        while ( ResultCache.findOutsideLiterals( matcher, literals ) ) {
+            start = Math.max( start, time( matcher.group( 2 ), timeZone, false ) );
+        }
+        matcher = UPPER_BOUND.matcher( normalized );
+        while ( ResultCache.findOutsideLiterals( matcher, literals ) ) {
+            end = Math.min( end, time( matcher.group( 2 ), timeZone, true ) );
+            column = matcher.group( 1 );
+            insertAt = matcher.end();
+        }
+        matcher = RANGE.matcher( normalized );
+        while ( ResultCache.findOutsideLiterals( matcher, literals ) ) {
+            String from = matcher.group( 2 ) != null ? matcher.group( 2 ) : matcher.group( 3 );
+            start = Math.max( start, time( from, timeZone, false ) );
+            end = Math.min( end, time( matcher.group( 4 ), timeZone, true ) );
+            column = matcher.group( 1 );
+            insertAt = matcher.end();
+        }
+        if ( column == null || start == Long.MIN_VALUE || end == Long.MAX_VALUE || start >= end ) {
+            return null;
+        }
+
+        int count = (int) Math.min( parts, ( end - start ) / MIN_PART_MILLIS );
+        if ( count < 2 ) {
+            return null;
+        }
+
+        List<String> queries = new ArrayList<>( count );
+        String before = normalized.substring( 0, insertAt );
+        String after = normalized.substring( insertAt );
+        for ( int part = 0; part < count; part++ ) {
+            StringBuilder query = new StringBuilder( normalized.length() + 80 ).append( before );
+            if ( part > 0 ) {
+                query.append( " AND " ).append( column ).append( " >= " ).append( boundary( start, end, count, part ) );
+            }
+            if ( part < count - 1 ) {
+                query.append( " AND " ).append( column ).append( " < " )
+                    .append( boundary( start, end, count, part + 1 ) );
+            }
+            queries.add( query.append( after ).toString() );
+        }
+        if ( descending ) {
+            Collections.reverse( queries );
+        }
+        return queries;
+    }
+
+    private static long boundary( long start, long end, int count, int index ) {
+        return start + ( end - start ) / count * index;
+    }
+
+    /**
+     * Time of a bound, Long.MIN_VALUE or Long.MAX_VALUE when it is not a time, so that it is ignored.
+     */
+    private static long time( String literal, TimeZone timeZone, boolean upper ) {
+        long time = ResultCache.parseTime( literal, timeZone, upper );
+        return time != Long.MAX_VALUE || upper ? time : Long.MIN_VALUE;
+    }
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2014-2018 TIBCO Software Inc. All Rights Reserved.
+ * Licensed under a BSD-type license. See TIBCO LICENSE.txt for license text.
+ */
+package com.tibco.loglogic.lmi.jdbc;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.tibco.loglogic.lmi.jdbc.QueryPostExecutor.ColumnDesc;
+import com.tibco.loglogic.lmi.jdbc.QueryPostExecutor.QueryMetadata;
+
+/**
+ * Results of the queries on time ranges that are over, shared by the connections of the driver that enable it.
+ * <p>
+ * Events of a time range that ended a while ago no longer change, so the same query returns the same rows: the rows
+ * of such a query are kept once it has been read to the end, and the following executions of the same query, by the
+ * same user on the same query node, are answered from memory without going to the query node. The least recently used
+ * results are evicted first, to stay within a number of entries and a byte budget.
+ * <p>
+ * A query is cached only if one of its conditions is an upper bound on sys_eventTime older than the minimum age, and
+ * nothing could widen the range: no OR, NOT or UNION, and no function of the current time. Dates written as text are
+ * taken at the latest instant they can denote, in any time zone, as the time zone of the query node is not known.
+ */
+final class ResultCache {
+
+    /** time zone with the latest clock, where a date ends the last */
+    private static final TimeZone LATEST_TIME_ZONE = TimeZone.getTimeZone( "GMT-12:00" );
+
+    /** upper bound on sys_eventTime: {@code < x}, {@code <= x}, {@code BETWEEN a AND x} or {@code IN a:x} */
+    private static final Pattern UPPER_BOUND = Pattern
+        .compile( "(?i)(?:\\w+\\.)?sys_eventTime\\s*(?:<=?|\\s+BETWEEN\\s+(?:'[^']*'|\"[^\"]*\"|\\d+)\\s+AND"
+            + "|\\s+IN\\s+(?:'[^']*'|\"[^\"]*\"|\\d+)\\s*:)\\s*('[^']*'|\"[^\"]*\"|\\d+)" );
+
+    /** words that could let rows of a later time into the results */
+    static final Pattern OPEN_RANGE = Pattern
+        .compile( "(?i)\\b(?:OR|NOT|UNION|NOW|SYSDATE|CURRENT_DATE|CURRENT_TIME|CURRENT_TIMESTAMP|TODAY)\\b" );
+
+    static final Pattern LITERAL = Pattern.compile( "'[^']*'|\"(?:[^\"\\\\]|\\\\.)*\"" );
+
+    private static final String[] DATE_FORMATS = { "yyyy-MM-dd HH:mm:ss.SSS", "yyyy-MM-dd HH:mm:ss",
+                                                   "yyyy-MM-dd HH:mm", "yyyy-MM-dd" };
+
+    /**
+     * Results of a query.
+     */
+    static final class Entry {
+
+        final QueryMetadata metadata;
+
+        final ResultsPage rows;
+
+        final long bytes;
+
+        Entry( QueryMetadata metadata, ResultsPage rows ) {
+            this.metadata = metadata;
+            this.rows = rows;
+            this.bytes = rows.estimateBytes();
+        }
+    }
+
+    /** in access order, the least recently used first */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>( 16, 0.75f, true );
+
+    private long maxBytes;
+
+    private int maxEntries;
+
+    private long bytes;
+
+    /**
+     * Raise the limits of the cache to at least the ones of a connection.
+     */
+    synchronized void configure( long maxBytes, int maxEntries ) {
+        this.maxBytes = Math.max( this.maxBytes, maxBytes );
+        this.maxEntries = Math.max( this.maxEntries, maxEntries );
+    }
+
+    synchronized long getMaxBytes() {
+        return maxBytes;
+    }
+
+    synchronized Entry get( String key ) {
+        return entries.get( key );
+    }
+
+    /**
+     * Keep the pages of the results of a query, unless they exceed the byte budget of the whole cache.
+     */
+    void put( String key, List<ColumnDesc> columns, List<ResultsPage> pages ) {
+        QueryMetadata metadata = new QueryMetadata();
+        metadata.setColumns( columns );
+        // merged outside of the lock, entries are immutable
+        Entry entry = new Entry( metadata, ResultsPage.concat( ResultsPage.storageOf( columns ), pages ) );
+
+        synchronized ( this ) {
+            if ( entry.bytes > maxBytes ) {
+                return;
+            }
+            Entry previous = entries.put( key, entry );
+            if ( previous != null ) {
+                bytes -= previous.bytes;
+            }
+            bytes += entry.bytes;
+
+            Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+            while ( bytes > maxBytes || entries.size() > maxEntries ) {
+                bytes -= eldest.next().getValue().bytes;
+                eldest.remove();
+            }
+        }
+    }
+
+    /**
+     * Key of the results of the query, or null if the query may return other rows later.
+     *
+     * @param node host and port of the query node
+     * @param user user running the query, as the rows depend on its permissions
+     * @param sql query, with the parameters of prepared statements substituted
+     * @param minAgeMillis time after which the events of a time range no longer change
+     */
+    static String keyOf( String node, String user, String sql, long minAgeMillis ) {
+        String normalized = normalize( sql );
+        String conditions = LITERAL.matcher( normalized ).replaceAll( "''" );
+        if ( OPEN_RANGE.matcher( conditions ).find() ) {
+            return null;
+        }
+
+        long closedBefore = System.currentTimeMillis() - minAgeMillis;
+        int[] literals = literalSpans( normalized );
+        Matcher matcher = UPPER_BOUND.matcher( normalized );
+        while ( findOutsideLiterals( matcher, literals ) ) {
+            long end = parseTime( matcher.group( 1 ), LATEST_TIME_ZONE, true );
+            if ( end != Long.MAX_VALUE && end <= closedBefore ) {
+                return node + '\n' + user + '\n' + normalized;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Offsets of the literals of the query: the start and the end of each literal, one after the other.
+     */
+    static int[] literalSpans( String sql ) {
+        List<Integer> offsets = new ArrayList<>();
+        Matcher matcher = LITERAL.matcher( sql );
+        while ( matcher.find() ) {
+            offsets.add( matcher.start() );
+            offsets.add( matcher.end() );
+        }
+        int[] spans = new int[offsets.size()];
+        for ( int i = 0; i < spans.length; i++ ) {
+            spans[i] = offsets.get( i );
+        }
+        return spans;
+    }
+
+    /**
+     * Find the next match of the matcher that starts outside of the literals, so that the text of a literal is never
+     * taken as a condition of the query.
+     *
+     * @param literals offsets of the literals of the text of the matcher, see {@link #literalSpans(String)}
+     * @return false if there is no such match
+     */
+    static boolean findOutsideLiterals( Matcher matcher, int[] literals ) {
+        while ( matcher.find() ) {
+            int literalEnd = -1;
+            for ( int i = 0; i < literals.length && literals[i] <= matcher.start(); i += 2 ) {
+                if ( matcher.start() < literals[i + 1] ) {
+                    literalEnd = literals[i + 1];
+                }
+            }
+            if ( literalEnd < 0 ) {
+                return true;
+            }
+            // go on after the literal, with the text around it still visible to the pattern
+            matcher.region( literalEnd, matcher.regionEnd() ).useTransparentBounds( true ).useAnchoringBounds( false );
+        }
+        return false;
+    }
+
+    /**
+     * The query with its runs of white spaces, outside of literals, replaced by a single space.
+     */
+    static String normalize( String sql ) {
+        StringBuilder normalized = new StringBuilder( sql.length() );
+        char quote = 0;
+        for ( int i = 0; i < sql.length(); i++ ) {
+            char ch = sql.charAt( i );
+            if ( quote != 0 ) {
+                normalized.append( ch );
+                if ( ch == '\\' && quote == '"' && i + 1 < sql.length() ) {
+                    normalized.append( sql.charAt( ++i ) );
+                }
+                else if ( ch == quote ) {
+                    quote = 0;
+                }
+            }
+            else if ( Character.isWhitespace( ch ) ) {
+                if ( normalized.length() > 0 && normalized.charAt( normalized.length() - 1 ) != ' ' ) {
+                    normalized.append( ' ' );
+                }
+            }
+            else {
+                if ( ch == '\'' || ch == '"' ) {
+                    quote = ch;
+                }
+                normalized.append( ch );
+            }
+        }
+        int length = normalized.length();
+        while ( length > 0 && ( normalized.charAt( length - 1 ) == ' ' || normalized.charAt( length - 1 ) == ';' ) ) {
+            length--;
+        }
+        normalized.setLength( length );
+        return normalized.toString();
+    }
+
+    /**
+     * Instant denoted by a literal of the query in the time zone, Long.MAX_VALUE if it is not a time.
+     *
+     * @param endOfDay take a date alone at the end of the day rather than at its start
+     */
+    static long parseTime( String literal, TimeZone timeZone, boolean endOfDay ) {
+        if ( literal.charAt( 0 ) != '\'' && literal.charAt( 0 ) != '"' ) {
+            // milliseconds, as prepared statements send dates
+            try {
+                return Long.parseLong( literal );
+            }
+            catch ( NumberFormatException e ) {
+                return Long.MAX_VALUE;
+            }
+        }
+        String text = literal.substring( 1, literal.length() - 1 ).trim();
+        for ( String pattern : DATE_FORMATS ) {
+            if ( text.length() != pattern.replace( "'", "" ).length() ) {
+                continue;
+            }
+            SimpleDateFormat format = new SimpleDateFormat( pattern );
+            format.setTimeZone( timeZone );
+            format.setLenient( false );
+            try {
+                long time = format.parse( text ).getTime();
+                // a date alone may mean the whole day
+                return endOfDay && pattern.length() == 10 ? time + 24 * 3600 * 1000L : time;
+            }
+            catch ( ParseException e ) {
+                // next format
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+}
@@ -4,30 +4,34 @@
  */
 package com.tibco.loglogic.lmi.jdbc;
 
-import java.sql.ResultSet;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
 
-import com.fasterxml.jackson.annotation.JsonProperty;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.config.RequestConfig;
-import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
-import org.apache.http.util.EntityUtils;
+import org.apache.http.client.methods.HttpUriRequest;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
 
 /**
  * Task to obtain next batch of values for result set. It should be executed on the connection's executor.
  */
 class ResultsGetExecutor
-    implements Runnable {
+    implements Runnable, HttpExchange {
 
     private volatile boolean eofReached;
 
-    private List<List<String>> buffer;
+    private ResultsPage buffer;
 
     private final String queryId;
 
@@ -41,8 +45,23 @@ class ResultsGetExecutor
 
     private final LmiResultSet resultSet;
 
-    private ResultsError resultsError;
+    private final ResultsPageQueue pageQueue;
 
+    private volatile ResultsError resultsError;
+
+    /** run once the response is back, guarded by the latch */
+    private final List<Runnable> completionCallbacks = new ArrayList<>();
+
+    /** size of the response body of the page, and time spent receiving and decoding it */
+    private long bytesRead;
+
+    private long decodeNanos;
+
+    /** window of the long polls, set with the first request */
+    private ResultsPollScheduler scheduler;
+
+    /** last response of the long polls */
+    private QueryResults queryResults;
 
     @JsonIgnoreProperties(ignoreUnknown = true)
     static class ErrorOrWarning {
@@ -74,7 +93,7 @@ class ResultsGetExecutor
 
         private int offset;
 
-        private List<List<String>> rows;
+        private ResultsPage rows;
 
         private List<ErrorOrWarning> errorsOrWarnings;
 
@@ -92,11 +111,11 @@ class ResultsGetExecutor
             this.offset = offset;
         }
 
-        public List<List<String>> getRows() {
+        public ResultsPage getRows() {
             return rows;
         }
 
-        public void setRows( List<List<String>> rows ) {
+        public void setRows( ResultsPage rows ) {
             this.rows = rows;
         }
 
@@ -129,12 +148,17 @@ class ResultsGetExecutor
         }
 
         public void setErrorOrWarnings(List<ErrorOrWarning> errorOrWarnings) {
-            this.errorsOrWarnings = errorsOrWarnings;
+            this.errorsOrWarnings = errorOrWarnings;
         }
     }
 
-    public ResultsGetExecutor(LmiConnection connection, LmiStatement lmiStatement, LmiResultSet rs, String queryId, int batchSize ) {
+    private static final TypeReference<List<ErrorOrWarning>> ERRORS_OR_WARNINGS_TYPE = new TypeReference<List<ErrorOrWarning>>() {
+    };
+
+    public ResultsGetExecutor(LmiConnection connection, LmiStatement lmiStatement, LmiResultSet rs,
+                              ResultsPageQueue pageQueue, String queryId, int batchSize ) {
         this.connection = connection;
+        this.pageQueue = pageQueue;
         this.eofReached = false;
         this.queryId = queryId;
         this.batchSize = batchSize;
@@ -146,7 +170,7 @@ class ResultsGetExecutor
     /**
      * Values for the next batch, blocking call.
      */
-    List<List<String>> getBuffer()
+    ResultsPage getBuffer()
         throws InterruptedException {
 
         // wait for the response
@@ -167,77 +191,202 @@ class ResultsGetExecutor
 
     @Override
     public void run() {
+        try {
+            connection.getHttpSession().execute( this );
+        }
+        catch ( SQLException e ) {
+            finished( e );
+        }
+    }
 
-        Thread.currentThread().getThreadGroup().getParent();
-
-        QueryResults queryResults = null;
+    /**
+     * Next long poll for the page, null once it is received.
+     */
+    @Override
+    public HttpUriRequest nextRequest()
+        throws SQLException {
 
-        try {
+        if ( buffer != null || resultsError != null ) {
+            return null;
+        }
+        if ( resultSet.closed ) {
+            throw new SQLException( "Query was cancelled" );
+        }
+        if ( scheduler == null ) {
+            scheduler = ResultsPollScheduler.forConnection( connection );
+        }
+        if ( scheduler.isExpired() ) {
+            throw new SQLException( "Timeout while polling for the results" );
+        }
 
-            HttpGet getRequest = new HttpGet( connection.getUrl() + "/" + queryId + "/results" + "?size=" + batchSize
-                + "&longPollTimeout=" + connection.getPollingPeriod() );
-            System.out.println( "getRequest.uri=" + getRequest.getURI() );
-            // the socket timeout needs to be longer than the request timeout to give the server time to respond
-            RequestConfig requestConfig = RequestConfig.custom().setSocketTimeout( connection.getNetworkTimeout() )
-                .setConnectTimeout( connection.getNetworkTimeout() ).build();
-            getRequest.setConfig( requestConfig );
+        // the socket timeout needs to be longer than the request timeout to give the server time to respond
+        RequestConfig requestConfig = RequestConfig.custom().setSocketTimeout( connection.getNetworkTimeout() )
+            .setConnectTimeout( connection.getNetworkTimeout() ).build();
 
-            ObjectMapper mapper = connection.getObjectMapper();
+        HttpGet getRequest = new HttpGet( connection.getUrl() + "/" + queryId + "/results" + "?size=" + batchSize
+            + "&longPollTimeout=" + scheduler.nextWindowMillis() );
+        System.out.println( "getRequest.uri=" + getRequest.getURI() );
+        getRequest.setConfig( requestConfig );
 
-            int timeLeft = connection.getPollingTimeout() * 1000;
-            while ( true ) {
-                if ( timeLeft <= 0 ) {
-                    throw new SQLException( "Timeout while polling for the results" );
-                }
+        System.out.print( "Getting results..." );
+        System.out.flush();
+        return getRequest;
+    }
 
-                System.out.print( "Getting results..." );
-                System.out.flush();
-                try ( CloseableHttpResponse response = connection.getHttpClient().execute( getRequest )) {
-                    if (response.getStatusLine().getStatusCode() == 200) {
-                        // successful response
-                        String responseString = EntityUtils.toString(response.getEntity());
-                        queryResults = mapper.readValue(responseString, QueryResults.class);
-                        System.out
-                                .println("OK, rows=" + queryResults.getRows().size() + ", more=" + queryResults.isHasMore());
-                        if (queryResults.getRows().size() == 0 && queryResults.isHasMore()) {
-                            // the query has not finished yet after the waiting time, retry
-                            timeLeft -= connection.getPollingPeriod();
-                            System.out.println("Retry, left: " + timeLeft + "ms");
-                            continue;
-                        }
-                        buffer = queryResults.getRows();
-                        for ( ErrorOrWarning errorOrWarning : queryResults.errorsOrWarnings ) {
-                            if ( errorOrWarning.getSeverity().equals("WARNING")) {
-                                resultSet.addWarning( errorOrWarning.getText() );
-                            }
-
-                        }
-                        break;
-                    } else {
-                        String errorMessage = "Bad response from querynode: " + response.getStatusLine().getStatusCode() + ": "
-                                + response.getStatusLine().getReasonPhrase();
-                        // unsuccessful response
-                        resultsError = new ResultsError();
-                        resultsError.setErrorMessage(errorMessage);
-                        break;
+    @Override
+    public void responseReceived( HttpResponse response )
+        throws Exception {
+
+        if (response.getStatusLine().getStatusCode() == 200) {
+            // successful response, decode the rows straight from the socket
+            long decodeStart = System.nanoTime();
+            CountingInputStream content = new CountingInputStream( response.getEntity().getContent() );
+            try ( JsonParser parser = connection.getObjectMapper().getFactory().createParser( content ) ) {
+                queryResults = readQueryResults( parser, resultSet.getColumnStorage(), batchSize );
+            }
+            bytesRead = content.getCount();
+            decodeNanos = System.nanoTime() - decodeStart;
+            System.out
+                    .println("OK, rows=" + queryResults.getRows().getRowCount() + ", more=" + queryResults.isHasMore());
+            resultSet.updateProgress( queryResults.getProgress(), queryResults.getTimeSpent(),
+                                      queryResults.getRows().getRowCount() );
+            if (queryResults.getRows().getRowCount() == 0 && queryResults.isHasMore()) {
+                // the query has not finished yet after the waiting time, retry
+                scheduler.stillRunning( queryResults.getProgress(), queryResults.getTimeSpent() );
+                System.out.println("Retry, left: " + scheduler.remainingMillis() + "ms");
+                return;
+            }
+            if ( queryResults.getErrorsOrWarnings() != null ) {
+                for ( ErrorOrWarning errorOrWarning : queryResults.getErrorsOrWarnings() ) {
+                    if ( "WARNING".equals( errorOrWarning.getSeverity() ) ) {
+                        resultSet.addWarning( errorOrWarning.getText() );
                     }
                 }
             }
+            buffer = queryResults.getRows();
+        } else {
+            String errorMessage = "Bad response from querynode: " + response.getStatusLine().getStatusCode() + ": "
+                    + response.getStatusLine().getReasonPhrase();
+            // unsuccessful response
+            ResultsError error = new ResultsError();
+            error.setErrorMessage(errorMessage);
+            resultsError = error;
         }
-        catch ( Exception e ) {
-            resultsError = new ResultsError();
-            resultsError.setErrorMessage( e.getMessage() );
-            resultsError.setThrowable( e.getCause() );
-            resultsError.setElement( e.getStackTrace() );
-        }
-        finally {
-            // Added a null check in case of unsuccessful response
-            if ( queryResults != null ) {
-                if ( !queryResults.isHasMore() ) {
-                    eofReached = true;
-                }
+    }
+
+    @Override
+    public void finished( Exception e ) {
+        if ( e != null ) {
+            ResultsError error = new ResultsError();
+            error.setErrorMessage( e.getMessage() );
+            error.setThrowable( e.getCause() );
+            error.setElement( e.getStackTrace() );
+            resultsError = error;
+        }
+
+        // Added a null check in case of unsuccessful response
+        if ( queryResults != null ) {
+            if ( !queryResults.isHasMore() ) {
+                eofReached = true;
             }
+        }
+        // the queue must know the fetch is over before the consumer sees the page, or the consumer could take the
+        // next page while this one is still counted in flight and find none
+        pageQueue.pageFetched( this );
+        List<Runnable> callbacks;
+        synchronized ( latch ) {
             latch.countDown();
+            callbacks = new ArrayList<>( completionCallbacks );
+            completionCallbacks.clear();
+        }
+        for ( Runnable callback : callbacks ) {
+            callback.run();
+        }
+    }
+
+    /**
+     * Decodes a results page token by token, so that the response is never held as one string nor as an intermediate
+     * JSON tree. Each value is decoded into the column storage as soon as it is read.
+     *
+     * @param storage storage of each column, see {@link ResultsPage#storageOf(List)}
+     * @param expectedRows number of rows requested
+     */
+    static QueryResults readQueryResults( JsonParser parser, int[] storage, int expectedRows )
+        throws IOException {
+
+        if ( parser.nextToken() != JsonToken.START_OBJECT ) {
+            throw new JsonParseException( parser, "Expected a results object" );
+        }
+
+        QueryResults queryResults = new QueryResults();
+        queryResults.setRows( new ResultsPage.Builder( storage, 0 ).build() );
+
+        while ( parser.nextToken() == JsonToken.FIELD_NAME ) {
+            String fieldName = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            switch ( fieldName ) {
+                case "rows":
+                    if ( token == JsonToken.START_ARRAY ) {
+                        queryResults.setRows( readRows( parser, new ResultsPage.Builder( storage, expectedRows ) ) );
+                    }
+                    break;
+                case "offset":
+                    queryResults.setOffset( parser.getValueAsInt() );
+                    break;
+                case "progress":
+                    queryResults.setProgress( parser.getValueAsInt() );
+                    break;
+                case "timeSpent":
+                    queryResults.setTimeSpent( parser.getValueAsInt() );
+                    break;
+                case "hasMore":
+                    queryResults.setHasMore( parser.getValueAsBoolean() );
+                    break;
+                case "errorsOrWarnings":
+                    if ( token == JsonToken.START_ARRAY ) {
+                        List<ErrorOrWarning> errorsOrWarnings = parser.readValueAs( ERRORS_OR_WARNINGS_TYPE );
+                        queryResults.setErrorOrWarnings( errorsOrWarnings );
+                    }
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+
+        return queryResults;
+    }
+
+    /**
+     * Reads the rows array, the parser being positioned on its START_ARRAY token.
+     */
+    private static ResultsPage readRows( JsonParser parser, ResultsPage.Builder rows )
+        throws IOException {
+
+        JsonToken token;
+        while ( ( token = parser.nextToken() ) != JsonToken.END_ARRAY ) {
+            if ( token != JsonToken.START_ARRAY ) {
+                throw new JsonParseException( parser, "Expected a row array" );
+            }
+            while ( ( token = parser.nextToken() ) != JsonToken.END_ARRAY ) {
+                rows.addValue( readValue( parser, token ) );
+            }
+            rows.endRow();
+        }
+        return rows.build();
+    }
+
+    private static String readValue( JsonParser parser, JsonToken token )
+        throws IOException {
+
+        switch ( token ) {
+            case VALUE_NULL:
+                return null;
+            case START_OBJECT:
+            case START_ARRAY:
+                // structured values are not expected, keep their JSON text
+                return parser.readValueAsTree().toString();
+            default:
+                return parser.getText();
         }
     }
 
@@ -253,6 +402,93 @@ class ResultsGetExecutor
         return eofReached;
     }
 
+    /**
+     * Non blocking check of the EOF, only meaningful once the response is back.
+     */
+    boolean hasReachedEof() {
+        return eofReached;
+    }
+
+    /**
+     * Run the callback once the response is back, right away if it is back already.
+     */
+    void whenDone( Runnable callback ) {
+        synchronized ( latch ) {
+            if ( latch.getCount() > 0 ) {
+                completionCallbacks.add( callback );
+                return;
+            }
+        }
+        callback.run();
+    }
+
+    /**
+     * Non blocking check that the response is back.
+     */
+    boolean isDone() {
+        return latch.getCount() == 0;
+    }
+
+    /**
+     * Number of rows received, only meaningful once the response is back.
+     */
+    int getRowCount() {
+        return buffer != null ? buffer.getRowCount() : 0;
+    }
+
+    long getBytesRead() {
+        return bytesRead;
+    }
+
+    long getDecodeNanos() {
+        return decodeNanos;
+    }
+
+    /**
+     * Counts the bytes read from the response body.
+     */
+    private static final class CountingInputStream
+        extends FilterInputStream {
+
+        private long count;
+
+        CountingInputStream( InputStream in ) {
+            super( in );
+        }
+
+        @Override
+        public int read()
+            throws IOException {
+            int b = super.read();
+            if ( b != -1 ) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read( byte[] b, int off, int len )
+            throws IOException {
+            int n = super.read( b, off, len );
+            if ( n > 0 ) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip( long n )
+            throws IOException {
+            long skipped = super.skip( n );
+            count += skipped;
+            return skipped;
+        }
+
+        long getCount() {
+            return count;
+        }
+    }
+
     ResultsError getResultsError() {
         return resultsError;
     }
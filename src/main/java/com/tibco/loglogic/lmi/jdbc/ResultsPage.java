@@ -0,0 +1,568 @@
+/*
+ * Copyright (c) 2014-2018 TIBCO Software Inc. All Rights Reserved.
+ * Licensed under a BSD-type license. See TIBCO LICENSE.txt for license text.
+ */
+package com.tibco.loglogic.lmi.jdbc;
+
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import com.tibco.loglogic.lmi.jdbc.QueryPostExecutor.ColumnDesc;
+
+/**
+ * One batch of rows, stored column by column.
+ * <p>
+ * Each column is kept in an array matching its type: long[] for TIMESTAMP and LONG, int[] for INT, double[] for
+ * DOUBLE, a bit set for BOOLEAN, and String[] for everything else. Values are decoded once, when the page is built,
+ * and nulls are tracked in a separate bit set per column.
+ * <p>
+ * The text of a typed value is kept as well when it is not the one its typed value prints as, such as "100" for a
+ * DOUBLE or "TRUE" for a BOOLEAN, so that getString returns the text sent by the server.
+ */
+final class ResultsPage
+    implements LmiRowBatch {
+
+    static final int STORAGE_STRING = 0;
+
+    static final int STORAGE_LONG = 1;
+
+    static final int STORAGE_INT = 2;
+
+    static final int STORAGE_DOUBLE = 3;
+
+    static final int STORAGE_BOOLEAN = 4;
+
+    private final int rowCount;
+
+    private final int[] storage;
+
+    /** one array (or BitSet for booleans) per column */
+    private final Object[] values;
+
+    private final BitSet[] nulls;
+
+    /** for each typed column, the text of the values printed otherwise, null if there is none */
+    private final String[][] texts;
+
+    private ResultsPage( int rowCount, int[] storage, Object[] values, BitSet[] nulls, String[][] texts ) {
+        this.rowCount = rowCount;
+        this.storage = storage;
+        this.values = values;
+        this.nulls = nulls;
+        this.texts = texts;
+    }
+
+    /**
+     * Storage used for each of the columns, derived from the column types of the query.
+     */
+    static int[] storageOf( List<ColumnDesc> columns ) {
+        int[] storage = new int[columns.size()];
+        for ( int i = 0; i < storage.length; i++ ) {
+            switch ( LmiResultSetMetaData.getSQLTypeId( columns.get( i ).getType() ) ) {
+                case Types.TIMESTAMP:
+                case Types.BIGINT:
+                    storage[i] = STORAGE_LONG;
+                    break;
+                case Types.INTEGER:
+                    storage[i] = STORAGE_INT;
+                    break;
+                case Types.DOUBLE:
+                    storage[i] = STORAGE_DOUBLE;
+                    break;
+                case Types.BOOLEAN:
+                    storage[i] = STORAGE_BOOLEAN;
+                    break;
+                default:
+                    storage[i] = STORAGE_STRING;
+            }
+        }
+        return storage;
+    }
+
+    static ResultsPage fromRows( int[] storage, String[][] rows ) {
+        Builder builder = new Builder( storage, rows.length );
+        for ( String[] row : rows ) {
+            for ( String value : row ) {
+                builder.addValue( value );
+            }
+            builder.endRow();
+        }
+        return builder.build();
+    }
+
+    /**
+     * The pages one after the other, as a single page.
+     */
+    static ResultsPage concat( int[] storage, List<ResultsPage> pages ) {
+        int rowCount = 0;
+        boolean sameStorage = true;
+        for ( ResultsPage page : pages ) {
+            rowCount += page.rowCount;
+            sameStorage &= Arrays.equals( storage, page.storage );
+        }
+        if ( !sameStorage ) {
+            // some columns were turned into strings, in some pages only
+            Builder builder = new Builder( storage, rowCount );
+            for ( ResultsPage page : pages ) {
+                for ( int row = 0; row < page.rowCount; row++ ) {
+                    for ( int column = 0; column < storage.length; column++ ) {
+                        builder.addValue( page.getString( column, row ) );
+                    }
+                    builder.endRow();
+                }
+            }
+            return builder.build();
+        }
+
+        Object[] values = new Object[storage.length];
+        BitSet[] nulls = new BitSet[storage.length];
+        String[][] texts = new String[storage.length][];
+        for ( int column = 0; column < storage.length; column++ ) {
+            Object target = Builder.newColumn( storage[column], rowCount );
+            BitSet targetNulls = new BitSet();
+            int offset = 0;
+            for ( ResultsPage page : pages ) {
+                Object source = page.values[column];
+                if ( source instanceof BitSet ) {
+                    copyBits( (BitSet) source, (BitSet) target, offset );
+                }
+                else {
+                    System.arraycopy( source, 0, target, offset, page.rowCount );
+                }
+                copyBits( page.nulls[column], targetNulls, offset );
+                if ( page.texts[column] != null ) {
+                    if ( texts[column] == null ) {
+                        texts[column] = new String[rowCount];
+                    }
+                    System.arraycopy( page.texts[column], 0, texts[column], offset, page.rowCount );
+                }
+                offset += page.rowCount;
+            }
+            values[column] = target;
+            nulls[column] = targetNulls;
+        }
+        return new ResultsPage( rowCount, storage.clone(), values, nulls, texts );
+    }
+
+    /**
+     * The rows of the page at the indexes, in order.
+     */
+    ResultsPage select( int[] rows, int count ) {
+        Builder builder = new Builder( storage, count );
+        for ( int i = 0; i < count; i++ ) {
+            for ( int column = 0; column < storage.length; column++ ) {
+                builder.addValue( getString( column, rows[i] ) );
+            }
+            builder.endRow();
+        }
+        return builder.build();
+    }
+
+    private static void copyBits( BitSet source, BitSet target, int offset ) {
+        for ( int bit = source.nextSetBit( 0 ); bit >= 0; bit = source.nextSetBit( bit + 1 ) ) {
+            target.set( offset + bit );
+        }
+    }
+
+    /**
+     * Approximate number of bytes of heap used by the values of the page.
+     */
+    long estimateBytes() {
+        long bytes = 0;
+        for ( int column = 0; column < storage.length; column++ ) {
+            switch ( storage[column] ) {
+                case STORAGE_LONG:
+                case STORAGE_DOUBLE:
+                    bytes += 8L * rowCount;
+                    break;
+                case STORAGE_INT:
+                    bytes += 4L * rowCount;
+                    break;
+                case STORAGE_BOOLEAN:
+                    bytes += rowCount / 8;
+                    break;
+                default:
+                    bytes += estimateBytes( (String[]) values[column] );
+            }
+            if ( texts[column] != null ) {
+                bytes += estimateBytes( texts[column] );
+            }
+            bytes += nulls[column].size() / 8;
+        }
+        return bytes;
+    }
+
+    private long estimateBytes( String[] strings ) {
+        long bytes = 0;
+        // the array may be larger than the page
+        for ( int row = 0; row < rowCount; row++ ) {
+            String value = strings[row];
+            // reference, header of the string and of its array, two bytes per character at most
+            bytes += value == null ? 4 : 40 + 2L * value.length();
+        }
+        return bytes;
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return storage.length;
+    }
+
+    @Override
+    public boolean isNull( int column, int row ) {
+        return nulls[column].get( row );
+    }
+
+    @Override
+    public String getString( int column, int row ) {
+        if ( isNull( column, row ) ) {
+            return null;
+        }
+        if ( texts[column] != null && texts[column][row] != null ) {
+            return texts[column][row];
+        }
+        switch ( storage[column] ) {
+            case STORAGE_LONG:
+                return Long.toString( ( (long[]) values[column] )[row] );
+            case STORAGE_INT:
+                return Integer.toString( ( (int[]) values[column] )[row] );
+            case STORAGE_DOUBLE:
+                return Double.toString( ( (double[]) values[column] )[row] );
+            case STORAGE_BOOLEAN:
+                return Boolean.toString( ( (BitSet) values[column] ).get( row ) );
+            default:
+                return ( (String[]) values[column] )[row];
+        }
+    }
+
+    /**
+     * @throws NumberFormatException when the value is not an integer, as for a DOUBLE with a fraction
+     */
+    @Override
+    public long getLong( int column, int row ) {
+        switch ( storage[column] ) {
+            case STORAGE_LONG:
+                return ( (long[]) values[column] )[row];
+            case STORAGE_INT:
+                return ( (int[]) values[column] )[row];
+            default:
+                // parsed from the text, as by Long.parseLong on the value sent by the server
+                return Long.parseLong( getString( column, row ) );
+        }
+    }
+
+    /**
+     * @throws NumberFormatException when the value is not an integer or does not fit in an int
+     */
+    @Override
+    public int getInt( int column, int row ) {
+        switch ( storage[column] ) {
+            case STORAGE_INT:
+                return ( (int[]) values[column] )[row];
+            case STORAGE_LONG:
+                long value = ( (long[]) values[column] )[row];
+                if ( value != (int) value ) {
+                    throw new NumberFormatException( "Value out of range for an int: " + value );
+                }
+                return (int) value;
+            default:
+                return Integer.parseInt( getString( column, row ) );
+        }
+    }
+
+    /**
+     * @throws NumberFormatException when the value is not a number
+     */
+    @Override
+    public double getDouble( int column, int row ) {
+        switch ( storage[column] ) {
+            case STORAGE_DOUBLE:
+                return ( (double[]) values[column] )[row];
+            case STORAGE_LONG:
+                return ( (long[]) values[column] )[row];
+            case STORAGE_INT:
+                return ( (int[]) values[column] )[row];
+            default:
+                return Double.parseDouble( getString( column, row ) );
+        }
+    }
+
+    /**
+     * @return true only for a BOOLEAN true or the string "true", ignoring case, as numbers are not true
+     */
+    @Override
+    public boolean getBoolean( int column, int row ) {
+        switch ( storage[column] ) {
+            case STORAGE_BOOLEAN:
+                return ( (BitSet) values[column] ).get( row );
+            case STORAGE_STRING:
+                return "true".equalsIgnoreCase( ( (String[]) values[column] )[row] );
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Copy the values of the rows of a column into the array, 0 for nulls, as {@link #getLong} converts them.
+     *
+     * @throws NumberFormatException when a string value is not a number
+     */
+    void fillLongs( int column, int fromRow, int count, long[] target, int offset ) {
+        if ( storage[column] == STORAGE_LONG ) {
+            // nulls are stored as 0
+            System.arraycopy( values[column], fromRow, target, offset, count );
+            return;
+        }
+        for ( int i = 0; i < count; i++ ) {
+            target[offset + i] = isNull( column, fromRow + i ) ? 0 : getLong( column, fromRow + i );
+        }
+    }
+
+    /**
+     * Copy the values of the rows of a column into the array, 0 for nulls, as {@link #getInt} converts them.
+     *
+     * @throws NumberFormatException when a string value is not a number
+     */
+    void fillInts( int column, int fromRow, int count, int[] target, int offset ) {
+        if ( storage[column] == STORAGE_INT ) {
+            System.arraycopy( values[column], fromRow, target, offset, count );
+            return;
+        }
+        for ( int i = 0; i < count; i++ ) {
+            target[offset + i] = isNull( column, fromRow + i ) ? 0 : getInt( column, fromRow + i );
+        }
+    }
+
+    /**
+     * Copy the values of the rows of a column into the array, 0 for nulls, as {@link #getDouble} converts them.
+     *
+     * @throws NumberFormatException when a string value is not a number
+     */
+    void fillDoubles( int column, int fromRow, int count, double[] target, int offset ) {
+        if ( storage[column] == STORAGE_DOUBLE ) {
+            System.arraycopy( values[column], fromRow, target, offset, count );
+            return;
+        }
+        for ( int i = 0; i < count; i++ ) {
+            target[offset + i] = isNull( column, fromRow + i ) ? 0 : getDouble( column, fromRow + i );
+        }
+    }
+
+    /**
+     * Copy the values of the rows of a column into the array, false for nulls, as {@link #getBoolean} converts them.
+     */
+    void fillBooleans( int column, int fromRow, int count, boolean[] target, int offset ) {
+        for ( int i = 0; i < count; i++ ) {
+            target[offset + i] = !isNull( column, fromRow + i ) && getBoolean( column, fromRow + i );
+        }
+    }
+
+    /**
+     * Copy the values of the rows of a column into the array, as {@link #getString} converts them.
+     */
+    void fillStrings( int column, int fromRow, int count, String[] target, int offset ) {
+        if ( storage[column] == STORAGE_STRING ) {
+            // nulls are stored as null
+            System.arraycopy( values[column], fromRow, target, offset, count );
+            return;
+        }
+        for ( int i = 0; i < count; i++ ) {
+            target[offset + i] = getString( column, fromRow + i );
+        }
+    }
+
+    /**
+     * Set the elements of the array for the rows whose value of the column is null, clear the others.
+     */
+    void fillNulls( int column, int fromRow, int count, boolean[] target, int offset ) {
+        Arrays.fill( target, offset, offset + count, false );
+        BitSet columnNulls = nulls[column];
+        for ( int row = columnNulls.nextSetBit( fromRow ); row >= 0 && row < fromRow + count;
+              row = columnNulls.nextSetBit( row + 1 ) ) {
+            target[offset + row - fromRow] = true;
+        }
+    }
+
+    /**
+     * Accumulates rows value by value, decoding each value into the storage of its column.
+     * <p>
+     * A value that cannot be decoded into the storage of its typed column turns that column back into a string
+     * column, so that the value is reported by the accessors exactly as before.
+     */
+    static final class Builder {
+
+        private final int[] storage;
+
+        private final Object[] values;
+
+        private final BitSet[] nulls;
+
+        /** text of the typed values printed otherwise, allocated for a column when it has one */
+        private final String[][] texts;
+
+        private int capacity;
+
+        private int rowCount;
+
+        private int columnIndex;
+
+        Builder( int[] storage, int expectedRows ) {
+            this.storage = storage.clone();
+            this.capacity = Math.max( 16, expectedRows );
+            this.values = new Object[storage.length];
+            this.nulls = new BitSet[storage.length];
+            this.texts = new String[storage.length][];
+            for ( int i = 0; i < storage.length; i++ ) {
+                values[i] = newColumn( this.storage[i], capacity );
+                nulls[i] = new BitSet();
+            }
+        }
+
+        private static Object newColumn( int storage, int capacity ) {
+            switch ( storage ) {
+                case STORAGE_LONG:
+                    return new long[capacity];
+                case STORAGE_INT:
+                    return new int[capacity];
+                case STORAGE_DOUBLE:
+                    return new double[capacity];
+                case STORAGE_BOOLEAN:
+                    return new BitSet();
+                default:
+                    return new String[capacity];
+            }
+        }
+
+        /**
+         * Next value of the current row, from left to right. Values beyond the known columns are ignored.
+         */
+        void addValue( String text ) {
+            int column = columnIndex++;
+            if ( column >= values.length ) {
+                return;
+            }
+            if ( rowCount == capacity ) {
+                grow();
+            }
+            if ( text == null ) {
+                nulls[column].set( rowCount );
+                return;
+            }
+            try {
+                switch ( storage[column] ) {
+                    case STORAGE_LONG:
+                        ( (long[]) values[column] )[rowCount] = Long.parseLong( text );
+                        keepText( column, text, isCanonicalInteger( text ) );
+                        break;
+                    case STORAGE_INT:
+                        ( (int[]) values[column] )[rowCount] = Integer.parseInt( text );
+                        keepText( column, text, isCanonicalInteger( text ) );
+                        break;
+                    case STORAGE_DOUBLE:
+                        double value = Double.parseDouble( text );
+                        ( (double[]) values[column] )[rowCount] = value;
+                        keepText( column, text, Double.toString( value ).equals( text ) );
+                        break;
+                    case STORAGE_BOOLEAN:
+                        if ( "true".equalsIgnoreCase( text ) ) {
+                            ( (BitSet) values[column] ).set( rowCount );
+                        }
+                        keepText( column, text, "true".equals( text ) || "false".equals( text ) );
+                        break;
+                    default:
+                        ( (String[]) values[column] )[rowCount] = text;
+                }
+            }
+            catch ( NumberFormatException e ) {
+                demoteToString( column );
+                ( (String[]) values[column] )[rowCount] = text;
+            }
+        }
+
+        /**
+         * Keep the text of the value of the current row, unless its typed value prints the same.
+         */
+        private void keepText( int column, String text, boolean canonical ) {
+            if ( !canonical ) {
+                if ( texts[column] == null ) {
+                    texts[column] = new String[capacity];
+                }
+                texts[column][rowCount] = text;
+            }
+        }
+
+        /**
+         * Whether an integer parsed from the text prints as the text: no sign but a minus, no leading zero, no -0.
+         */
+        private static boolean isCanonicalInteger( String text ) {
+            int first = text.charAt( 0 ) == '-' ? 1 : 0;
+            if ( text.charAt( 0 ) == '+' || text.length() == first ) {
+                return false;
+            }
+            return text.charAt( first ) != '0' || text.length() == 1;
+        }
+
+        /**
+         * End of the current row, missing values are null.
+         */
+        void endRow() {
+            if ( rowCount == capacity ) {
+                grow();
+            }
+            for ( int column = columnIndex; column < values.length; column++ ) {
+                nulls[column].set( rowCount );
+            }
+            columnIndex = 0;
+            rowCount++;
+        }
+
+        int getRowCount() {
+            return rowCount;
+        }
+
+        ResultsPage build() {
+            return new ResultsPage( rowCount, storage, values, nulls, texts );
+        }
+
+        private void grow() {
+            capacity = capacity * 2;
+            for ( int i = 0; i < values.length; i++ ) {
+                Object column = values[i];
+                if ( column instanceof long[] ) {
+                    values[i] = Arrays.copyOf( (long[]) column, capacity );
+                }
+                else if ( column instanceof int[] ) {
+                    values[i] = Arrays.copyOf( (int[]) column, capacity );
+                }
+                else if ( column instanceof double[] ) {
+                    values[i] = Arrays.copyOf( (double[]) column, capacity );
+                }
+                else if ( column instanceof String[] ) {
+                    values[i] = Arrays.copyOf( (String[]) column, capacity );
+                }
+                if ( texts[i] != null ) {
+                    texts[i] = Arrays.copyOf( texts[i], capacity );
+                }
+            }
+        }
+
+        private void demoteToString( int column ) {
+            // with the texts of the values, so that the rows before read as they were sent
+            ResultsPage partial = new ResultsPage( rowCount, storage, values, nulls, texts );
+            String[] strings = new String[capacity];
+            for ( int row = 0; row < rowCount; row++ ) {
+                strings[row] = partial.getString( column, row );
+            }
+            values[column] = strings;
+            texts[column] = null;
+            storage[column] = STORAGE_STRING;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2014-2018 TIBCO Software Inc. All Rights Reserved.
+ * Licensed under a BSD-type license. See TIBCO LICENSE.txt for license text.
+ */
+package com.tibco.loglogic.lmi.jdbc;
+
+import java.sql.SQLException;
+import java.util.LinkedList;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Bounded read-ahead queue of result pages for one result set.
+ * <p>
+ * The query node hands out the pages of a query in sequence, so at most one {@link ResultsGetExecutor} is in flight
+ * at a time. As soon as a page is received the next one is requested, until the queue holds as many pages as the
+ * read-ahead depth. Taking a page from the queue makes room for the next fetch.
+ */
+class ResultsPageQueue {
+
+    private final LmiConnection connection;
+
+    private final LmiStatement statement;
+
+    private final LmiResultSet resultSet;
+
+    private final String queryId;
+
+    private final int depth;
+
+    private final BatchSizer batchSizer;
+
+    /** pages requested from the server, in order, whether received or not */
+    private final LinkedList<ResultsGetExecutor> pages = new LinkedList<>();
+
+    private boolean fetching;
+
+    private int pagesTaken;
+
+    /** set when the last page was received or a fetch failed, no more pages are requested */
+    private boolean stopped;
+
+    private boolean closed;
+
+    /** when set, pages are requested only when taken, not ahead */
+    private boolean onDemand;
+
+    private SQLException failure;
+
+    ResultsPageQueue( LmiConnection connection, LmiStatement statement, LmiResultSet resultSet, String queryId,
+                      int depth, BatchSizer batchSizer ) {
+        this.connection = connection;
+        this.statement = statement;
+        this.resultSet = resultSet;
+        this.queryId = queryId;
+        this.depth = depth;
+        this.batchSizer = batchSizer;
+    }
+
+    /**
+     * Next page in sequence, possibly still being fetched. Null when all the pages were taken already.
+     */
+    synchronized ResultsGetExecutor take()
+        throws SQLException {
+
+        if ( pages.isEmpty() ) {
+            fill();
+        }
+
+        ResultsGetExecutor page = pages.poll();
+        if ( page == null && failure != null ) {
+            throw failure;
+        }
+        if ( page != null ) {
+            // waiting for the first page is the query running, not the consumer being starved
+            if ( pagesTaken > 0 && !page.isDone() ) {
+                batchSizer.consumerStarved();
+            }
+            pagesTaken++;
+        }
+
+        // make room for the next page
+        if ( !onDemand ) {
+            fill();
+        }
+
+        return page;
+    }
+
+    /**
+     * Request the next page if none is in flight and the queue is not full.
+     */
+    synchronized void fill()
+        throws SQLException {
+
+        if ( closed || stopped || fetching || pages.size() >= depth ) {
+            return;
+        }
+
+        ResultsGetExecutor page = new ResultsGetExecutor( connection, statement, resultSet, this, queryId,
+                                                          batchSizer.nextBatchSize() );
+        pages.add( page );
+        fetching = true;
+        try {
+            connection.getExecutor().execute( page );
+        }
+        catch ( RejectedExecutionException e ) {
+            pages.removeLast();
+            fetching = false;
+            stopped = true;
+            failure = new SQLException( "Cannot fetch results, connection is closed", e );
+            throw failure;
+        }
+    }
+
+    /**
+     * Called by the executor once its page is received, or on error.
+     */
+    void pageFetched( ResultsGetExecutor page ) {
+
+        synchronized ( this ) {
+            fetching = false;
+            if ( page.getResultsError() != null || page.hasReachedEof() ) {
+                stopped = true;
+                return;
+            }
+            batchSizer.pageReceived( page.getRowCount(), page.getBytesRead(), page.getDecodeNanos() );
+            if ( pages.contains( page ) ) {
+                batchSizer.consumerBehind();
+            }
+            if ( onDemand ) {
+                return;
+            }
+        }
+
+        try {
+            fill();
+        }
+        catch ( SQLException ignored ) {
+            // recorded as failure, reported on the next take
+        }
+    }
+
+    /**
+     * Allow fetching again after a failed page was reported to the user.
+     */
+    synchronized void reset() {
+        if ( !closed && !fetching ) {
+            pages.clear();
+            stopped = false;
+            failure = null;
+        }
+    }
+
+    /**
+     * Stop reading ahead: the next page is requested only when the previous one is taken.
+     */
+    synchronized void setOnDemand() {
+        onDemand = true;
+    }
+
+    void setFixedBatchSize( int batchSize ) {
+        batchSizer.setFixedBatchSize( batchSize );
+    }
+
+    synchronized void close() {
+        closed = true;
+        pages.clear();
+    }
+}
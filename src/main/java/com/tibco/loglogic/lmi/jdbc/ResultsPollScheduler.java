@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2014-2018 TIBCO Software Inc. All Rights Reserved.
+ * Licensed under a BSD-type license. See TIBCO LICENSE.txt for license text.
+ */
+package com.tibco.loglogic.lmi.jdbc;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chooses the long-poll window of each results request while waiting for a page.
+ * <p>
+ * The polling timeout is enforced against a monotonic deadline, so the time actually spent in each request is
+ * accounted for, whether or not the server waited for the whole window. While the query runs, the progress and time
+ * spent reported by the server give an estimate of the remaining time, used as the next window, between the polling
+ * period and the maximum polling period: slow queries are polled less often, without delaying the results since the
+ * server answers as soon as rows are available.
+ */
+class ResultsPollScheduler {
+
+    /** margin left between the long-poll window and the socket timeout, for the response to come back */
+    private static final int SOCKET_TIMEOUT_MARGIN_MILLIS = 5000;
+
+    private final long deadlineNanos;
+
+    private final int minWindowMillis;
+
+    private final int maxWindowMillis;
+
+    private int windowMillis;
+
+    ResultsPollScheduler( int pollingTimeoutSeconds, int pollingPeriodMillis, int maxPollingPeriodMillis,
+                          int networkTimeoutMillis ) {
+        this.deadlineNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos( pollingTimeoutSeconds );
+        this.maxWindowMillis = Math.max( 1,
+                                         Math.min( maxPollingPeriodMillis,
+                                                   networkTimeoutMillis - SOCKET_TIMEOUT_MARGIN_MILLIS ) );
+        this.minWindowMillis = Math.min( pollingPeriodMillis, maxWindowMillis );
+        this.windowMillis = minWindowMillis;
+    }
+
+    static ResultsPollScheduler forConnection( LmiConnection connection ) {
+        return new ResultsPollScheduler( connection.getPollingTimeout(), connection.getPollingPeriod(),
+                                         connection.getMaxPollingPeriod(), connection.getNetworkTimeout() );
+    }
+
+    boolean isExpired() {
+        return remainingMillis() <= 0;
+    }
+
+    long remainingMillis() {
+        return TimeUnit.NANOSECONDS.toMillis( deadlineNanos - System.nanoTime() );
+    }
+
+    /**
+     * Long-poll window for the next request, never beyond the deadline.
+     */
+    int nextWindowMillis() {
+        return (int) Math.max( 1, Math.min( windowMillis, remainingMillis() ) );
+    }
+
+    /**
+     * The server answered without rows, the query is still running.
+     *
+     * @param progress progress of the query reported by the server, in percent
+     * @param timeSpentMillis time spent by the server on the query
+     */
+    void stillRunning( int progress, int timeSpentMillis ) {
+        long next;
+        if ( progress > 0 && progress < 100 && timeSpentMillis > 0 ) {
+            // remaining time, assuming the query progresses at the same pace
+            next = (long) timeSpentMillis * ( 100 - progress ) / progress;
+        }
+        else {
+            // no usable estimate, back off
+            next = (long) windowMillis * 2;
+        }
+        windowMillis = (int) Math.max( minWindowMillis, Math.min( maxWindowMillis, next ) );
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2014-2018 TIBCO Software Inc. All Rights Reserved.
+ * Licensed under a BSD-type license. See TIBCO LICENSE.txt for license text.
+ */
+package com.tibco.loglogic.lmi.jdbc;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Executor of the background tasks of a connection: query creation, results fetching, query deletion.
+ * <p>
+ * Tasks run on a bounded pool of named daemon threads, so that a burst of queries queues up instead of creating as many
+ * threads, and a connection that is never closed does not keep the application alive. On Java 21 and later the tasks
+ * can run on virtual threads instead, one per task. In both cases the number of queued and running tasks is tracked,
+ * see {@link LmiExecutorMetrics}.
+ */
+class StatementExecutor
+    extends AbstractExecutorService {
+
+    /** idle threads of the pool are stopped after this time */
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    private static final AtomicInteger EXECUTOR_IDS = new AtomicInteger();
+
+    private final ExecutorService delegate;
+
+    private final int maxThreads;
+
+    private final boolean virtualThreads;
+
+    private final AtomicInteger queuedTasks = new AtomicInteger();
+
+    private final AtomicInteger peakQueuedTasks = new AtomicInteger();
+
+    private final AtomicInteger activeTasks = new AtomicInteger();
+
+    private final AtomicLong completedTasks = new AtomicLong();
+
+    private StatementExecutor( ExecutorService delegate, int maxThreads, boolean virtualThreads ) {
+        this.delegate = delegate;
+        this.maxThreads = maxThreads;
+        this.virtualThreads = virtualThreads;
+    }
+
+    /**
+     * @param maxThreads maximum number of threads of the pool
+     * @param virtualThreads run each task on its own virtual thread instead, if the JVM supports it
+     */
+    static StatementExecutor create( int maxThreads, boolean virtualThreads ) {
+        String name = "lmi-jdbc-" + EXECUTOR_IDS.incrementAndGet() + "-";
+        if ( virtualThreads ) {
+            ExecutorService virtual = VirtualThreads.newExecutor( name );
+            if ( virtual != null ) {
+                return new StatementExecutor( virtual, 0, true );
+            }
+            System.err.println( "Virtual threads need Java 21 or later, using a thread pool" );
+        }
+
+        maxThreads = Math.max( 1, maxThreads );
+        ThreadPoolExecutor pool = new ThreadPoolExecutor( maxThreads, maxThreads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                                                          new LinkedBlockingQueue<Runnable>(),
+                                                          new DaemonThreadFactory( name ) );
+        pool.allowCoreThreadTimeOut( true );
+        return new StatementExecutor( pool, maxThreads, false );
+    }
+
+    @Override
+    public void execute( final Runnable task ) {
+        int queued = queuedTasks.incrementAndGet();
+        int peak;
+        while ( queued > ( peak = peakQueuedTasks.get() ) && !peakQueuedTasks.compareAndSet( peak, queued ) ) {
+            // another thread raised the peak, compare again
+        }
+        try {
+            delegate.execute( new Runnable() {
+
+                @Override
+                public void run() {
+                    queuedTasks.decrementAndGet();
+                    activeTasks.incrementAndGet();
+                    try {
+                        task.run();
+                    }
+                    finally {
+                        activeTasks.decrementAndGet();
+                        completedTasks.incrementAndGet();
+                    }
+                }
+            } );
+        }
+        catch ( RejectedExecutionException e ) {
+            queuedTasks.decrementAndGet();
+            throw e;
+        }
+    }
+
+    LmiExecutorMetrics getMetrics() {
+        return new LmiExecutorMetrics( virtualThreads, maxThreads, activeTasks.get(), queuedTasks.get(),
+                                       peakQueuedTasks.get(), completedTasks.get() );
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return delegate.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination( long timeout, TimeUnit unit )
+        throws InterruptedException {
+        return delegate.awaitTermination( timeout, unit );
+    }
+
+    /**
+     * Daemon threads named after the executor.
+     */
+    static final class DaemonThreadFactory
+        implements ThreadFactory {
+
+        private final String name;
+
+        private final AtomicInteger threadIds = new AtomicInteger();
+
+        DaemonThreadFactory( String name ) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread( Runnable runnable ) {
+            Thread thread = new Thread( runnable, name + threadIds.incrementAndGet() );
+            thread.setDaemon( true );
+            return thread;
+        }
+    }
+}
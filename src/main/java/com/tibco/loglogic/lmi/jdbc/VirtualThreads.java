@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2014-2018 TIBCO Software Inc. All Rights Reserved.
+ * Licensed under a BSD-type license. See TIBCO LICENSE.txt for license text.
+ */
+package com.tibco.loglogic.lmi.jdbc;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Virtual threads, see {@link LmiConnection#PROPERTY_VIRTUAL_THREADS}.
+ * <p>
+ * This version looks the Java 21 API up at run time, the multi-release JAR replaces it with a direct call on Java 21
+ * and later.
+ */
+final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * Executor running each task on a new virtual thread, named with the prefix and a counter. Null when the JVM has no
+     * virtual threads.
+     */
+    static ExecutorService newExecutor( String name ) {
+        try {
+            // Executors.newThreadPerTaskExecutor( Thread.ofVirtual().name( name, 0 ).factory() )
+            Object builder = Thread.class.getMethod( "ofVirtual" ).invoke( null );
+            Class<?> builderClass = Class.forName( "java.lang.Thread$Builder" );
+            builder = builderClass.getMethod( "name", String.class, long.class ).invoke( builder, name, 0L );
+            ThreadFactory factory = (ThreadFactory) builderClass.getMethod( "factory" ).invoke( builder );
+            return (ExecutorService) Executors.class.getMethod( "newThreadPerTaskExecutor", ThreadFactory.class )
+                .invoke( null, factory );
+        }
+        catch ( ReflectiveOperationException | RuntimeException e ) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2014-2018 TIBCO Software Inc. All Rights Reserved.
+ * Licensed under a BSD-type license. See TIBCO LICENSE.txt for license text.
+ */
+package com.tibco.loglogic.lmi.jdbc;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.net.ssl.SSLContext;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.AuthenticationException;
+import org.apache.http.auth.Credentials;
+import org.apache.http.client.CredentialsProvider;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.Configurable;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.impl.EnglishReasonPhraseCatalog;
+import org.apache.http.impl.auth.BasicScheme;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.message.BasicStatusLine;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
+
+/**
+ * Transport on the HTTP client of the JDK, see {@link LmiConnection#TRANSPORT_JDK}. Java 11 version of the class.
+ * <p>
+ * Like the nio transport, no thread is held while a request is in flight. Unlike it, responses are not buffered in
+ * memory: the exchange is handed the response as soon as its headers are received, and a page of results is parsed on
+ * the executor of the exchange while its body is still arriving. HTTP/2 is used when the query node supports it.
+ */
+class JdkHttpTransport
+    extends HttpTransport {
+
+    private final HttpClient client;
+
+    private final Duration timeout;
+
+    private JdkHttpTransport( HttpClient client, Duration timeout ) {
+        this.client = client;
+        this.timeout = timeout;
+    }
+
+    /**
+     * @param timeoutMillis connect timeout, and response timeout of the requests without one
+     */
+    static HttpTransport create( SSLContext sslContext, int timeoutMillis ) {
+        Duration timeout = Duration.ofMillis( timeoutMillis );
+        return new JdkHttpTransport( HttpClient.newBuilder().sslContext( sslContext ).connectTimeout( timeout )
+            .build(), timeout );
+    }
+
+    @Override
+    public void execute( final HttpExchange exchange, final HttpContext context, final Executor executor ) {
+        HttpRequest request;
+        try {
+            HttpUriRequest httpRequest = exchange.nextRequest();
+            if ( httpRequest == null ) {
+                exchange.finished( null );
+                return;
+            }
+            request = toJdkRequest( httpRequest, context );
+        }
+        catch ( Exception e ) {
+            exchange.finished( e );
+            return;
+        }
+
+        client.sendAsync( request, BodyHandlers.ofInputStream() )
+            .whenComplete( ( response, error ) -> dispatch( executor, () -> {
+                if ( error != null ) {
+                    exchange.finished( toException( error ) );
+                    return;
+                }
+                HttpResponse httpResponse = toHttpResponse( response );
+                try {
+                    exchange.responseReceived( httpResponse );
+                }
+                catch ( Exception e ) {
+                    exchange.finished( e );
+                    return;
+                }
+                finally {
+                    EntityUtils.consumeQuietly( httpResponse.getEntity() );
+                }
+                // next request of the exchange, if any
+                execute( exchange, context, executor );
+            } ) );
+    }
+
+    /**
+     * Leave the thread of the client, unless the JDBC connection is closing and its executor is gone.
+     */
+    private static void dispatch( Executor executor, Runnable task ) {
+        try {
+            executor.execute( task );
+        }
+        catch ( RejectedExecutionException e ) {
+            task.run();
+        }
+    }
+
+    @Override
+    public HttpResponse execute( HttpUriRequest request, HttpContext context )
+        throws IOException {
+        try {
+            return toHttpResponse( client.send( toJdkRequest( request, context ), BodyHandlers.ofInputStream() ) );
+        }
+        catch ( InterruptedException e ) {
+            throw new InterruptedIOException( "Interrupted while waiting for " + request.getURI() );
+        }
+        catch ( AuthenticationException e ) {
+            throw new IOException( e );
+        }
+    }
+
+    private HttpRequest toJdkRequest( HttpUriRequest request, HttpContext context )
+        throws IOException, AuthenticationException {
+
+        HttpRequest.BodyPublisher body = HttpRequest.BodyPublishers.noBody();
+        HttpEntity entity = request instanceof HttpEntityEnclosingRequest
+                        ? ( (HttpEntityEnclosingRequest) request ).getEntity() : null;
+        if ( entity != null ) {
+            body = HttpRequest.BodyPublishers.ofByteArray( EntityUtils.toByteArray( entity ) );
+        }
+
+        HttpRequest.Builder builder = HttpRequest.newBuilder( request.getURI() ).method( request.getMethod(), body )
+            .timeout( getTimeout( request ) );
+        for ( Header header : request.getAllHeaders() ) {
+            builder.header( header.getName(), header.getValue() );
+        }
+        if ( entity != null && entity.getContentType() != null && !request.containsHeader( HttpHeaders.CONTENT_TYPE ) ) {
+            builder.header( HttpHeaders.CONTENT_TYPE, entity.getContentType().getValue() );
+        }
+
+        // the credentials of the connection, sent right away as with the other transports
+        CredentialsProvider credentialsProvider = HttpClientContext.adapt( context ).getCredentialsProvider();
+        if ( credentialsProvider != null && !request.containsHeader( HttpHeaders.AUTHORIZATION ) ) {
+            URI uri = request.getURI();
+            Credentials credentials = credentialsProvider.getCredentials( new AuthScope( uri.getHost(),
+                                                                                         uri.getPort() ) );
+            if ( credentials != null ) {
+                Header authorization = new BasicScheme().authenticate( credentials, request, context );
+                builder.header( authorization.getName(), authorization.getValue() );
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Socket timeout of the request, the JDK client applies it to the whole wait for the response.
+     */
+    private Duration getTimeout( HttpUriRequest request ) {
+        if ( request instanceof Configurable ) {
+            RequestConfig config = ( (Configurable) request ).getConfig();
+            if ( config != null && config.getSocketTimeout() > 0 ) {
+                return Duration.ofMillis( config.getSocketTimeout() );
+            }
+        }
+        return timeout;
+    }
+
+    /**
+     * Response whose entity streams the body as it arrives.
+     */
+    private static HttpResponse toHttpResponse( java.net.http.HttpResponse<InputStream> response ) {
+        int status = response.statusCode();
+        HttpVersion version = response.version() == HttpClient.Version.HTTP_2 ? new HttpVersion( 2, 0 )
+                        : HttpVersion.HTTP_1_1;
+        BasicHttpResponse httpResponse = new BasicHttpResponse( new BasicStatusLine( version, status,
+                                                                                     EnglishReasonPhraseCatalog.INSTANCE
+                                                                                         .getReason( status,
+                                                                                                     Locale.ENGLISH ) ) );
+        for ( Map.Entry<String, List<String>> header : response.headers().map().entrySet() ) {
+            for ( String value : header.getValue() ) {
+                httpResponse.addHeader( header.getKey(), value );
+            }
+        }
+
+        InputStreamEntity entity = new InputStreamEntity( response.body(), response.headers()
+            .firstValueAsLong( HttpHeaders.CONTENT_LENGTH ).orElse( -1 ) );
+        entity.setContentType( response.headers().firstValue( HttpHeaders.CONTENT_TYPE ).orElse( null ) );
+        entity.setContentEncoding( response.headers().firstValue( HttpHeaders.CONTENT_ENCODING ).orElse( null ) );
+        httpResponse.setEntity( entity );
+        return httpResponse;
+    }
+
+    private static Exception toException( Throwable error ) {
+        if ( error instanceof CompletionException && error.getCause() != null ) {
+            error = error.getCause();
+        }
+        return error instanceof Exception ? (Exception) error : new IOException( error );
+    }
+
+    /**
+     * The client of Java 11 has no close, its connections and thread are released once it is unreachable.
+     */
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,24 @@
+/*
+ * Copyright (c) 2014-2018 TIBCO Software Inc. All Rights Reserved.
+ * Licensed under a BSD-type license. See TIBCO LICENSE.txt for license text.
+ */
+package com.tibco.loglogic.lmi.jdbc;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Virtual threads, see {@link LmiConnection#PROPERTY_VIRTUAL_THREADS}. Java 21 version of the class.
+ */
+final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * Executor running each task on a new virtual thread, named with the prefix and a counter.
+     */
+    static ExecutorService newExecutor( String name ) {
+        return Executors.newThreadPerTaskExecutor( Thread.ofVirtual().name( name, 0 ).factory() );
+    }
+}